@@ -2,6 +2,10 @@ package org.usfirst.frc.team4308;
 
 import java.util.Objects;
 
+import org.usfirst.frc.team4308.util.CoalescingSpeedController;
+import org.usfirst.frc.team4308.util.DriveKinematics;
+import org.usfirst.frc.team4308.util.Loggable;
+
 import com.ctre.CANTalon;
 
 import edu.wpi.first.wpilibj.GenericHID;
@@ -9,11 +13,12 @@ import edu.wpi.first.wpilibj.MotorSafety;
 import edu.wpi.first.wpilibj.MotorSafetyHelper;
 import edu.wpi.first.wpilibj.RobotDrive;
 import edu.wpi.first.wpilibj.RobotDrive.MotorType;
+import edu.wpi.first.wpilibj.SpeedController;
 import edu.wpi.first.wpilibj.hal.HAL;
 import edu.wpi.first.wpilibj.hal.FRCNetComm.tInstances;
 import edu.wpi.first.wpilibj.hal.FRCNetComm.tResourceType;
 
-public class RobotDriveEdit implements MotorSafety {
+public class RobotDriveEdit implements MotorSafety, Loggable {
 
 	public enum MotorType {
 		kFrontLeft(0), kFrontRight(1), kBackLeft(2), kBackRight(3);
@@ -28,6 +33,7 @@ public class RobotDriveEdit implements MotorSafety {
 	public static final double kDefaultExpirationTime = 0.1D;
 	public static final double kDefaultSensitivity = 0.5D;
 	public static final double kDefaultMaxOutput = 1.0D;
+	public static final String kDefaultName = "Drive";
 	protected static final int kMaxNumberOfMotors = 4;
 
 	protected static boolean kArcadeRatioCurve_Reported = false;
@@ -36,15 +42,30 @@ public class RobotDriveEdit implements MotorSafety {
 	protected static boolean kMecanumCartesian_Reported = false;
 	protected static boolean kMecanumPolar_Reported = false;
 
+	protected static boolean reportingEnabled = true;
+
 	protected MotorSafetyHelper safetyHelper;
 
-	protected CANTalon frontLeftMotor;
-	protected CANTalon frontRightMotor;
-	protected CANTalon backLeftMotor;
-	protected CANTalon backRightMotor;
+	protected final String name;
+
+	protected SpeedController frontLeftMotor;
+	protected SpeedController frontRightMotor;
+	protected SpeedController backLeftMotor;
+	protected SpeedController backRightMotor;
+
+	/**
+	 * Outputs are written through these so unchanged values are not resent
+	 * over CAN every cycle.
+	 */
+	protected CoalescingSpeedController frontLeftOutput;
+	protected CoalescingSpeedController frontRightOutput;
+	protected CoalescingSpeedController backLeftOutput;
+	protected CoalescingSpeedController backRightOutput;
 
 	protected final boolean leftRightDrive;
 
+	protected final DriveKinematics kinematics = new DriveKinematics();
+
 	protected double sensitivity;
 	protected double maxOutput;
 
@@ -57,12 +78,30 @@ public class RobotDriveEdit implements MotorSafety {
 				new CANTalon(backRightMotor));
 	}
 
-	public RobotDriveEdit(CANTalon leftMotor, CANTalon rightMotor) {
-		this(leftMotor, rightMotor, null, null);
+	public RobotDriveEdit(SpeedController leftMotor, SpeedController rightMotor) {
+		this(kDefaultName, leftMotor, rightMotor);
 	}
 
-	public RobotDriveEdit(CANTalon frontLeftMotor, CANTalon frontRightMotor, CANTalon backLeftMotor,
-			CANTalon backRightMotor) {
+	public RobotDriveEdit(SpeedController frontLeftMotor, SpeedController frontRightMotor,
+			SpeedController backLeftMotor, SpeedController backRightMotor) {
+		this(kDefaultName, frontLeftMotor, frontRightMotor, backLeftMotor, backRightMotor);
+	}
+
+	/**
+	 * @param name
+	 *            prefix of the motors' telemetry keys, unique to this drive
+	 */
+	public RobotDriveEdit(String name, SpeedController leftMotor, SpeedController rightMotor) {
+		this(name, leftMotor, rightMotor, null, null);
+	}
+
+	/**
+	 * @param name
+	 *            prefix of the motors' telemetry keys, unique to this drive
+	 */
+	public RobotDriveEdit(String name, SpeedController frontLeftMotor, SpeedController frontRightMotor,
+			SpeedController backLeftMotor, SpeedController backRightMotor) {
+		this.name = Objects.requireNonNull(name, "The name cannot be null");
 		this.frontLeftMotor = Objects.requireNonNull(frontLeftMotor, "The front left motor cannot be null");
 		this.frontRightMotor = Objects.requireNonNull(frontRightMotor, "The front right motor cannot be null");
 		if (backLeftMotor == null && backRightMotor == null) {
@@ -71,7 +110,11 @@ public class RobotDriveEdit implements MotorSafety {
 			leftRightDrive = false;
 			this.backLeftMotor = Objects.requireNonNull(backLeftMotor, "The back left motor cannot be null");
 			this.backRightMotor = Objects.requireNonNull(backRightMotor, "The back right motor cannot be null");
+			backLeftOutput = new CoalescingSpeedController(name + " Back Left", this.backLeftMotor);
+			backRightOutput = new CoalescingSpeedController(name + " Back Right", this.backRightMotor);
 		}
+		frontLeftOutput = new CoalescingSpeedController(name + " Front Left", this.frontLeftMotor);
+		frontRightOutput = new CoalescingSpeedController(name + " Front Right", this.frontRightMotor);
 
 		sensitivity = kDefaultSensitivity;
 		maxOutput = kDefaultMaxOutput;
@@ -80,6 +123,30 @@ public class RobotDriveEdit implements MotorSafety {
 		safetyHelper.setSafetyEnabled(true);
 	}
 
+	/**
+	 * Drive the motors at "outputMagnitude" and "curve". Both outputMagnitude
+	 * and curve are -1.0 to +1.0 values, where 0.0 represents stopped and not
+	 * turning. curve < 0 will turn left and curve > 0 will turn right. The
+	 * algorithm for steering provides a constant turn radius for any normal
+	 * speed range, both forward and backward. Increasing sensitivity causes
+	 * sharper turns for fixed values of curve.
+	 *
+	 * @param outputMagnitude
+	 *            The speed setting for the outside wheel in a turn, forward or
+	 *            backwards, +1 to -1.
+	 * @param curve
+	 *            The rate of turn, constant for different forward speeds. Set
+	 *            curve < 0 for left turn or curve > 0 for right turn.
+	 */
+	public void drive(double outputMagnitude, double curve) {
+		if (!kArcadeRatioCurve_Reported) {
+			report(tInstances.kRobotDrive_ArcadeRatioCurve);
+			kArcadeRatioCurve_Reported = true;
+		}
+		kinematics.ratioCurve(outputMagnitude, curve, sensitivity);
+		setLeftRightMotorOutputs(kinematics.getLeft(), kinematics.getRight());
+	}
+
 	/**
 	 * Provide tank steering using the stored robot configuration. drive the
 	 * robot using two joystick inputs. The Y-axis will be selected from each
@@ -178,25 +245,12 @@ public class RobotDriveEdit implements MotorSafety {
 	public void tankDrive(double leftValue, double rightValue, boolean squaredInputs) {
 
 		if (!kTank_Reported) {
-			HAL.report(tResourceType.kResourceType_RobotDrive, leftRightDrive ? 2 : 4, tInstances.kRobotDrive_Tank);
+			report(tInstances.kRobotDrive_Tank);
 			kTank_Reported = true;
 		}
 
-		leftValue = limit(leftValue);
-		rightValue = limit(rightValue);
-		if (squaredInputs) {
-			if (leftValue >= 0.0) {
-				leftValue = leftValue * leftValue;
-			} else {
-				leftValue = -(leftValue * leftValue);
-			}
-			if (rightValue >= 0.0) {
-				rightValue = rightValue * rightValue;
-			} else {
-				rightValue = -(rightValue * rightValue);
-			}
-		}
-		setLeftRightMotorOutputs(leftValue, rightValue);
+		kinematics.tank(leftValue, rightValue, squaredInputs);
+		setLeftRightMotorOutputs(kinematics.getLeft(), kinematics.getRight());
 	}
 
 	/**
@@ -306,49 +360,12 @@ public class RobotDriveEdit implements MotorSafety {
 	 */
 	public void arcadeDrive(double moveValue, double rotateValue, boolean squaredInputs) {
 		if (!kArcadeStandard_Reported) {
-			HAL.report(tResourceType.kResourceType_RobotDrive, leftRightDrive ? 2 : 4,
-					tInstances.kRobotDrive_ArcadeStandard);
+			report(tInstances.kRobotDrive_ArcadeStandard);
 			kArcadeStandard_Reported = true;
 		}
 
-		double leftMotorSpeed;
-		double rightMotorSpeed;
-
-		moveValue = limit(moveValue);
-		rotateValue = limit(rotateValue);
-
-		if (squaredInputs) {
-			if (moveValue >= 0.0) {
-				moveValue = moveValue * moveValue;
-			} else {
-				moveValue = -(moveValue * moveValue);
-			}
-			if (rotateValue >= 0.0) {
-				rotateValue = rotateValue * rotateValue;
-			} else {
-				rotateValue = -(rotateValue * rotateValue);
-			}
-		}
-
-		if (moveValue > 0.0) {
-			if (rotateValue > 0.0) {
-				leftMotorSpeed = moveValue - rotateValue;
-				rightMotorSpeed = Math.max(moveValue, rotateValue);
-			} else {
-				leftMotorSpeed = Math.max(moveValue, -rotateValue);
-				rightMotorSpeed = moveValue + rotateValue;
-			}
-		} else {
-			if (rotateValue > 0.0) {
-				leftMotorSpeed = -Math.max(-moveValue, rotateValue);
-				rightMotorSpeed = moveValue + rotateValue;
-			} else {
-				leftMotorSpeed = moveValue - rotateValue;
-				rightMotorSpeed = -Math.max(-moveValue, -rotateValue);
-			}
-		}
-
-		setLeftRightMotorOutputs(leftMotorSpeed, rightMotorSpeed);
+		kinematics.arcade(moveValue, rotateValue, squaredInputs);
+		setLeftRightMotorOutputs(kinematics.getLeft(), kinematics.getRight());
 	}
 
 	/**
@@ -364,6 +381,26 @@ public class RobotDriveEdit implements MotorSafety {
 		arcadeDrive(moveValue, rotateValue, true);
 	}
 
+	/**
+	 * Curvature drive sets the radius of the turn rather than the turn rate,
+	 * so the robot steers the same path at any speed.
+	 *
+	 * @param speed
+	 *            The value to use for forwards/backwards
+	 * @param rotation
+	 *            The curvature of the path, positive to the right
+	 * @param quickTurn
+	 *            If set, the robot turns in place at low speeds
+	 */
+	public void curvatureDrive(double speed, double rotation, boolean quickTurn) {
+		if (!kArcadeRatioCurve_Reported) {
+			report(tInstances.kRobotDrive_ArcadeRatioCurve);
+			kArcadeRatioCurve_Reported = true;
+		}
+		kinematics.curvature(speed, rotation, quickTurn);
+		setLeftRightMotorOutputs(kinematics.getLeft(), kinematics.getRight());
+	}
+
 	/**
 	 * Drive method for Mecanum wheeled robots.
 	 *
@@ -392,34 +429,11 @@ public class RobotDriveEdit implements MotorSafety {
 	 */
 	public void mecanumDrive_Cartesian(double x, double y, double rotation, double gyroAngle) {
 		if (!kMecanumCartesian_Reported) {
-			HAL.report(tResourceType.kResourceType_RobotDrive, leftRightDrive ? 2 : 4,
-					tInstances.kRobotDrive_MecanumCartesian);
+			report(tInstances.kRobotDrive_MecanumCartesian);
 			kMecanumCartesian_Reported = true;
 		}
-		double xIn = x;
-		double yIn = y;
-		// Negate y for the joystick.
-		yIn = -yIn;
-		// Compensate for gyro angle.
-		double[] rotated = rotateVector(xIn, yIn, gyroAngle);
-		xIn = rotated[0];
-		yIn = rotated[1];
-
-		double[] wheelSpeeds = new double[kMaxNumberOfMotors];
-		wheelSpeeds[MotorType.kFrontLeft.value] = xIn + yIn + rotation;
-		wheelSpeeds[MotorType.kFrontRight.value] = -xIn + yIn - rotation;
-		wheelSpeeds[MotorType.kBackLeft.value] = -xIn + yIn + rotation;
-		wheelSpeeds[MotorType.kBackRight.value] = xIn + yIn - rotation;
-
-		normalize(wheelSpeeds);
-		frontLeftMotor.set(wheelSpeeds[MotorType.kFrontLeft.value] * maxOutput);
-		frontRightMotor.set(wheelSpeeds[MotorType.kFrontRight.value] * maxOutput);
-		backLeftMotor.set(wheelSpeeds[MotorType.kBackLeft.value] * maxOutput);
-		backRightMotor.set(wheelSpeeds[MotorType.kBackRight.value] * maxOutput);
-
-		if (safetyHelper != null) {
-			safetyHelper.feed();
-		}
+		kinematics.mecanumCartesian(x, y, rotation, gyroAngle);
+		setWheelOutputs();
 	}
 
 	/**
@@ -442,29 +456,22 @@ public class RobotDriveEdit implements MotorSafety {
 	 */
 	public void mecanumDrive_Polar(double magnitude, double direction, double rotation) {
 		if (!kMecanumPolar_Reported) {
-			HAL.report(tResourceType.kResourceType_RobotDrive, leftRightDrive ? 2 : 4,
-					tInstances.kRobotDrive_MecanumPolar);
+			report(tInstances.kRobotDrive_MecanumPolar);
 			kMecanumPolar_Reported = true;
 		}
-		// Normalized for full power along the Cartesian axes.
-		magnitude = limit(magnitude) * Math.sqrt(2.0);
-		// The rollers are at 45 degree angles.
-		double dirInRad = (direction + 45.0) * 3.14159 / 180.0;
-		double cosD = Math.cos(dirInRad);
-		double sinD = Math.sin(dirInRad);
-
-		double[] wheelSpeeds = new double[kMaxNumberOfMotors];
-		wheelSpeeds[MotorType.kFrontLeft.value] = (sinD * magnitude + rotation);
-		wheelSpeeds[MotorType.kFrontRight.value] = (cosD * magnitude - rotation);
-		wheelSpeeds[MotorType.kBackLeft.value] = (cosD * magnitude + rotation);
-		wheelSpeeds[MotorType.kBackRight.value] = (sinD * magnitude - rotation);
-
-		normalize(wheelSpeeds);
-
-		frontLeftMotor.set(wheelSpeeds[MotorType.kFrontLeft.value] * maxOutput);
-		frontRightMotor.set(wheelSpeeds[MotorType.kFrontRight.value] * maxOutput);
-		backLeftMotor.set(wheelSpeeds[MotorType.kBackLeft.value] * maxOutput);
-		backRightMotor.set(wheelSpeeds[MotorType.kBackRight.value] * maxOutput);
+		kinematics.mecanumPolar(magnitude, direction, rotation);
+		setWheelOutputs();
+	}
+
+	/**
+	 * Send the four wheel speeds computed by the last mecanum drive call to
+	 * the motors.
+	 */
+	protected void setWheelOutputs() {
+		frontLeftOutput.set(kinematics.getWheelSpeed(DriveKinematics.frontLeft) * maxOutput);
+		frontRightOutput.set(kinematics.getWheelSpeed(DriveKinematics.frontRight) * maxOutput);
+		backLeftOutput.set(kinematics.getWheelSpeed(DriveKinematics.backLeft) * maxOutput);
+		backRightOutput.set(kinematics.getWheelSpeed(DriveKinematics.backRight) * maxOutput);
 
 		if (safetyHelper != null) {
 			safetyHelper.feed();
@@ -484,52 +491,43 @@ public class RobotDriveEdit implements MotorSafety {
 	 */
 	public void setLeftRightMotorOutputs(double leftOutput, double rightOutput) {
 		if (leftRightDrive) {
-			frontLeftMotor.set(limit(leftOutput) * maxOutput);
-			frontRightMotor.set(limit(leftOutput) * maxOutput);
+			frontLeftOutput.set(limit(leftOutput) * maxOutput);
+			frontRightOutput.set(-limit(rightOutput) * maxOutput);
 		} else {
-			frontLeftMotor.set(limit(leftOutput) * maxOutput);
-			frontRightMotor.set(limit(leftOutput) * maxOutput);
-			backLeftMotor.set(limit(leftOutput) * maxOutput);
-			backRightMotor.set(limit(leftOutput) * maxOutput);
+			frontLeftOutput.set(limit(leftOutput) * maxOutput);
+			frontRightOutput.set(-limit(rightOutput) * maxOutput);
+			backLeftOutput.set(limit(leftOutput) * maxOutput);
+			backRightOutput.set(-limit(rightOutput) * maxOutput);
+		}
+
+		if (safetyHelper != null) {
+			safetyHelper.feed();
 		}
 	}
 
 	/**
-	 * Limit motor values to the -1.0 to +1.0 range.
+	 * Report use of a drive mode to the HAL, once per mode.
 	 */
-	protected static double limit(double num) {
-		return num > 1.0D ? 1.0D : (num < -1.0D ? -1.0D : num);
+	protected void report(int instance) {
+		if (reportingEnabled) {
+			HAL.report(tResourceType.kResourceType_RobotDrive, leftRightDrive ? 2 : 4, instance);
+		}
 	}
 
 	/**
-	 * Normalize all wheel speeds if the magnitude of any wheel is greater than
-	 * 1.0.
+	 * Turns usage reporting to the HAL on or off. Reporting needs the robot's
+	 * native libraries, so it must be off to drive on a desktop JVM, such as
+	 * in simulation.
 	 */
-	protected static void normalize(double[] wheelSpeeds) {
-		double maxMagnitude = Math.abs(wheelSpeeds[0]);
-		for (int i = 1; i < kMaxNumberOfMotors; i++) {
-			double temp = Math.abs(wheelSpeeds[i]);
-			if (maxMagnitude < temp) {
-				maxMagnitude = temp;
-			}
-		}
-		if (maxMagnitude > 1.0) {
-			for (int i = 0; i < kMaxNumberOfMotors; i++) {
-				wheelSpeeds[i] = wheelSpeeds[i] / maxMagnitude;
-			}
-		}
+	public static void setReportingEnabled(boolean enabled) {
+		reportingEnabled = enabled;
 	}
 
 	/**
-	 * Rotate a vector in Cartesian space.
+	 * Limit motor values to the -1.0 to +1.0 range.
 	 */
-	protected static double[] rotateVector(double x, double y, double angle) {
-		double cosA = Math.cos(angle * (3.14159 / 180.0));
-		double sinA = Math.sin(angle * (3.14159 / 180.0));
-		double[] out = new double[2];
-		out[0] = x * cosA - y * sinA;
-		out[1] = x * sinA + y * cosA;
-		return out;
+	protected static double limit(double num) {
+		return DriveKinematics.limit(num);
 	}
 
 	/**
@@ -546,26 +544,46 @@ public class RobotDriveEdit implements MotorSafety {
 	public void setInvertedMotor(MotorType motor, boolean isInverted) {
 		switch (motor) {
 		case kFrontLeft:
-			if (frontLeftMotor == null)
-				frontLeftMotor.setInverted(isInverted);
+			if (frontLeftOutput != null)
+				frontLeftOutput.setInverted(isInverted);
 			break;
 		case kFrontRight:
-			if (frontRightMotor == null)
-				frontRightMotor.setInverted(isInverted);
+			if (frontRightOutput != null)
+				frontRightOutput.setInverted(isInverted);
 			break;
 		case kBackLeft:
-			if (backLeftMotor == null)
-				backLeftMotor.setInverted(isInverted);
+			if (backLeftOutput != null)
+				backLeftOutput.setInverted(isInverted);
 			break;
 		case kBackRight:
-			if (backRightMotor == null)
-				backRightMotor.setInverted(isInverted);
+			if (backRightOutput != null)
+				backRightOutput.setInverted(isInverted);
 			break;
 		default:
 			throw new IllegalArgumentException("Illegal motor type:" + motor);
 		}
 	}
 
+	/**
+	 * @return the coalescing wrapper a motor is written through, for its frame
+	 *         counts and settings, or null if the drive does not have that
+	 *         motor
+	 */
+	public CoalescingSpeedController getOutput(MotorType motor) {
+		switch (motor) {
+		case kFrontLeft:
+			return frontLeftOutput;
+		case kFrontRight:
+			return frontRightOutput;
+		case kBackLeft:
+			return backLeftOutput;
+		case kBackRight:
+			return backRightOutput;
+		default:
+			throw new IllegalArgumentException("Illegal motor type:" + motor);
+		}
+	}
+
 	public void setSensitivity(double sensitivity) {
 		this.sensitivity = sensitivity;
 	}
@@ -600,13 +618,13 @@ public class RobotDriveEdit implements MotorSafety {
 	@Override
 	public void stopMotor() {
 		if (leftRightDrive) {
-			frontLeftMotor.stopMotor();
-			frontLeftMotor.stopMotor();
+			frontLeftOutput.stopMotor();
+			frontRightOutput.stopMotor();
 		} else {
-			frontLeftMotor.stopMotor();
-			frontRightMotor.stopMotor();
-			backLeftMotor.stopMotor();
-			backRightMotor.stopMotor();
+			frontLeftOutput.stopMotor();
+			frontRightOutput.stopMotor();
+			backLeftOutput.stopMotor();
+			backRightOutput.stopMotor();
 		}
 		safetyHelper.feed();
 	}
@@ -623,7 +641,24 @@ public class RobotDriveEdit implements MotorSafety {
 
 	@Override
 	public String getDescription() {
-		return this.getClass().getName();
+		return name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Publishes the frame counts of each motor's output.
+	 */
+	@Override
+	public void log() {
+		frontLeftOutput.log();
+		frontRightOutput.log();
+		if (!leftRightDrive) {
+			backLeftOutput.log();
+			backRightOutput.log();
+		}
 	}
 
 }
@@ -1,5 +1,7 @@
 package org.usfirst.frc.team4308.robot;
 
+import org.usfirst.frc.team4308.util.ControllerInput;
+
 import edu.wpi.first.wpilibj.Joystick;
 
 public enum JoystickType {
@@ -19,8 +21,12 @@ public enum JoystickType {
 	}
 
 	public static JoystickType fromJoystick(Joystick joystick) {
+		return fromInput(ControllerInput.of(joystick));
+	}
+
+	public static JoystickType fromInput(ControllerInput input) {
 		for (JoystickType t : values()) {
-			if (t.getAxisCount() == joystick.getAxisCount())
+			if (t.getAxisCount() == input.getAxisCount())
 				return t;
 		}
 		return null;
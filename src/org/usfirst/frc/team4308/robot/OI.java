@@ -1,46 +1,69 @@
 package org.usfirst.frc.team4308.robot;
 
+import org.usfirst.frc.team4308.util.ControllerInput;
+import org.usfirst.frc.team4308.util.DualButton;
+
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Joystick;
 
 /**
  * This class is the glue that binds the controls on the physical operator
  * interface to the commands and command groups that allow control of the robot.
+ * Controls are read through a {@link ControllerInput}, so recorded inputs can
+ * be replayed through the same mappings.
  */
 public class OI {
 
 	private final Joystick joystick;
+	private final ControllerInput input;
 	private final JoystickType type;
 
 	private final int leftAxis;
 	private final int rightAxis;
 	private final int turnAxis;
 	private final int armAxis;
+	private final DualButton climbButton;
 
 	public OI() {
-		joystick = new Joystick(RobotMap.Control.driveStick);
-		type = JoystickType.fromJoystick(joystick);
+		this(new Joystick(RobotMap.Control.driveStick));
+	}
+
+	public OI(Joystick joystick) {
+		this(joystick, ControllerInput.of(joystick));
+	}
+
+	/**
+	 * Reads the controls from any input, such as a replayed one.
+	 */
+	public OI(ControllerInput input) {
+		this(null, input);
+	}
 
-		switch (type) {
-		case FLIGHT:
+	private OI(Joystick joystick, ControllerInput input) {
+		this.joystick = joystick;
+		this.input = input;
+		type = JoystickType.fromInput(input);
+
+		// A controller that is not plugged in reports no axes and has no type.
+		if (type == JoystickType.FLIGHT) {
 			armAxis = RobotMap.Control.Flight.throttle;
 			leftAxis = RobotMap.Control.Flight.pitch;
 			rightAxis = RobotMap.Control.Flight.roll;
-			turnAxis = 0;
-			break;
-		case STANDARD:
+			turnAxis = RobotMap.Control.Flight.roll;
+			climbButton = new DualButton(input, RobotMap.Control.Flight.up, RobotMap.Control.Flight.down);
+		} else if (type == JoystickType.STANDARD) {
 			armAxis = RobotMap.Control.Standard.leftX;
 			leftAxis = RobotMap.Control.Standard.leftY;
 			rightAxis = RobotMap.Control.Standard.rightY;
 			turnAxis = RobotMap.Control.Standard.rightX;
-			break;
-		default:
+			climbButton = new DualButton(input, RobotMap.Control.Standard.y, RobotMap.Control.Standard.a);
+		} else {
 			DriverStation.reportError("Invalid number of axes on control joystick", true);
 			armAxis = 0;
 			leftAxis = 0;
 			rightAxis = 0;
 			turnAxis = 0;
-			break;
+			climbButton = new DualButton(input, RobotMap.Control.Flight.up, RobotMap.Control.Flight.down);
 		}
 
 	}
@@ -49,16 +72,24 @@ public class OI {
 		return type;
 	}
 
+	/**
+	 * @return the joystick read, or null if the controls come from another
+	 *         input
+	 */
 	public Joystick getJoystick() {
 		return joystick;
 	}
 
+	public ControllerInput getInput() {
+		return input;
+	}
+
 	public int getLeftAxis() {
 		return leftAxis;
 	}
 
 	public double getLeftValue() {
-		return joystick.getRawAxis(leftAxis);
+		return input.getRawAxis(leftAxis);
 	}
 
 	public int getMoveAxis() {
@@ -66,7 +97,7 @@ public class OI {
 	}
 	
 	public double getMoveValue() {
-		return joystick.getRawAxis(leftAxis);
+		return input.getRawAxis(leftAxis);
 	}
 
 	public int getRightAxis() {
@@ -74,7 +105,7 @@ public class OI {
 	}
 
 	public double getRightValue() {
-		return joystick.getRawAxis(rightAxis);
+		return input.getRawAxis(rightAxis);
 	}
 
 	public int getRotateAxis() {
@@ -82,7 +113,7 @@ public class OI {
 	}
 	
 	public double getRotateValue() {
-		return joystick.getRawAxis(rightAxis);
+		return input.getRawAxis(rightAxis);
 	}
 
 	public int getArmAxis() {
@@ -90,7 +121,7 @@ public class OI {
 	}
 
 	public double getArmValue() {
-		return joystick.getRawAxis(armAxis);
+		return input.getRawAxis(armAxis);
 	}
 
 	public int getTurnAxis() {
@@ -98,7 +129,15 @@ public class OI {
 	}
 
 	public double getTurnValue() {
-		return joystick.getRawAxis(turnAxis);
+		return input.getRawAxis(turnAxis);
+	}
+
+	/**
+	 * @return the buttons that run the climber, positive to climb and
+	 *         negative to lower
+	 */
+	public DualButton getClimbButton() {
+		return climbButton;
 	}
 
 }
@@ -1,8 +1,36 @@
 package org.usfirst.frc.team4308.robot;
 
-import edu.wpi.first.wpilibj.RobotDrive;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.DoubleSupplier;
+
+import org.usfirst.frc.team4308.RobotDriveEdit;
+import org.usfirst.frc.team4308.robot.subsystems.Pneumatics;
+import org.usfirst.frc.team4308.util.ControllerInput;
+import org.usfirst.frc.team4308.util.FaultMonitor;
+import org.usfirst.frc.team4308.util.FixedRateLooper;
+import org.usfirst.frc.team4308.util.Loop;
+import org.usfirst.frc.team4308.util.MotionProfile;
+import org.usfirst.frc.team4308.util.MultiSpeedController;
+import org.usfirst.frc.team4308.util.Odometry;
+import org.usfirst.frc.team4308.util.PowerManager;
+import org.usfirst.frc.team4308.util.Powered;
+import org.usfirst.frc.team4308.util.PoweredStatistics;
+import org.usfirst.frc.team4308.util.ProfileFollower;
+import org.usfirst.frc.team4308.util.ProfileStore;
+import org.usfirst.frc.team4308.util.SensorCache;
+import org.usfirst.frc.team4308.util.SignalLog;
+import org.usfirst.frc.team4308.util.Telemetry;
+
+import com.ctre.CANTalon;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Encoder;
 import edu.wpi.first.wpilibj.SampleRobot;
 import edu.wpi.first.wpilibj.Joystick;
+import edu.wpi.first.wpilibj.PowerDistributionPanel;
+import edu.wpi.first.wpilibj.Talon;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
@@ -25,14 +53,120 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
  * instead if you're new.
  */
 public class Robot extends SampleRobot {
-	RobotDrive myRobot = new RobotDrive(0, 1);
+	Talon leftDrive = new Talon(0);
+	Talon rightDrive = new Talon(1);
+	RobotDriveEdit drive = new RobotDriveEdit("Drive", leftDrive, rightDrive);
 	Joystick stick = new Joystick(0);
 	final String defaultAuto = "Default";
 	final String customAuto = "My Auto";
 	SendableChooser<String> chooser = new SendableChooser<>();
+	MultiSpeedController climber = new MultiSpeedController("Climber", new CANTalon(RobotMap.Climb.masterChannel),
+			new CANTalon(RobotMap.Climb.slaveChannel));
+	FixedRateLooper controlLooper = new FixedRateLooper("Control", RobotMap.Loops.controlFrequency);
+	FixedRateLooper odometryLooper = new FixedRateLooper("Odometry", RobotMap.Loops.odometryFrequency);
+	FixedRateLooper sensorLooper = new FixedRateLooper("Sensors", RobotMap.Loops.sensorFrequency);
+	FixedRateLooper autoLooper = new FixedRateLooper("Autonomous", RobotMap.Loops.controlFrequency);
+	Teleop teleop;
+	FixedRateLooper telemetryLooper = new FixedRateLooper("Telemetry", RobotMap.Loops.telemetryFrequency);
+	Encoder leftEncoder;
+	Encoder rightEncoder;
+	Odometry odometry;
+	ProfileStore profiles;
+	PowerDistributionPanel pdp = new PowerDistributionPanel();
+	Pneumatics pneumatics;
+	FaultMonitor faults = new FaultMonitor("Faults");
+	FaultMonitor.DeferredListener faultReports = new FaultMonitor.DeferredListener("Fault Reports",
+			FaultMonitor.driverStation);
+	Powered robotPower;
+	PowerManager power;
+	DoubleSupplier driveScale;
+	SignalLog signalLog = new SignalLog(RobotMap.Logging.name, Paths.get(RobotMap.Logging.directory),
+			RobotMap.Logging.capacity);
 
 	public Robot() {
-		myRobot.setExpiration(0.1);
+		leftEncoder = new Encoder(RobotMap.Drive.leftChannelA, RobotMap.Drive.leftChannelB);
+		// The right side is mirrored, so its encoder counts backwards.
+		rightEncoder = new Encoder(RobotMap.Drive.rightChannelA, RobotMap.Drive.rightChannelB, true);
+		leftEncoder.setDistancePerPulse(RobotMap.Drive.encoderPulseDistance);
+		rightEncoder.setDistancePerPulse(RobotMap.Drive.encoderPulseDistance);
+		odometry = new Odometry("Odometry", leftEncoder, rightEncoder, null, RobotMap.Drive.trackWidth);
+		// Only the encoders are integrated at the odometry rate; every CAN read
+		// runs on the sensor looper, so a slow one cannot delay odometry.
+		odometryLooper.add(odometry);
+		sensorLooper.setWorkerCount(RobotMap.Loops.sensorWorkers);
+		sensorLooper.add(SensorCache.getInstance());
+
+		pneumatics = new Pneumatics(RobotMap.Pneumatics.pcmModule);
+		faults.add(pneumatics.getName(), pneumatics, RobotMap.Pneumatics.faultPeriod);
+		// Reported from the telemetry thread, so the sensor looper never
+		// waits on the driver station.
+		faults.addListener(faultReports);
+		sensorLooper.add(faults, RobotMap.Loops.faultFrequency);
+
+		robotPower = pdpPower(SensorCache.getInstance());
+		power = new PowerManager("Power", robotPower::voltage, RobotMap.Power.shedVoltage,
+				RobotMap.Power.restoreVoltage, RobotMap.Power.breakerAmpLimit, RobotMap.Power.cautionThreshold,
+				RobotMap.Power.warningThreshold);
+		// The PDP total already includes the compressor, so it is only a load.
+		power.addConsumer(robotPower);
+		power.addLoad("Compressor", scale -> pneumatics.setPaused(scale < 1.0), 0.0);
+		// Applied by the loops driving the robot, on their own thread.
+		driveScale = power.addLoad("Drive", RobotMap.Power.minimumDriveScale);
+		sensorLooper.add(power, RobotMap.Loops.powerFrequency);
+		sensorLooper.add(new PoweredStatistics("PDP", robotPower, RobotMap.Power.statisticsWindow),
+				RobotMap.Loops.powerFrequency);
+		telemetryLooper.add(Telemetry.getInstance());
+		telemetryLooper.add(faultReports);
+
+		signalLog.addJoystick("Stick", stick, RobotMap.Logging.axes, RobotMap.Logging.buttons);
+		signalLog.addBoolean("Teleop", () -> isOperatorControl() && isEnabled());
+		signalLog.addSignal("Left Distance", leftEncoder::getDistance);
+		signalLog.addSignal("Right Distance", rightEncoder::getDistance);
+		signalLog.addOutput("Left Drive", leftDrive);
+		signalLog.addOutput("Right Drive", rightDrive);
+		signalLog.addOutput("Climber", climber);
+		signalLog.addPowered("PDP", robotPower);
+		signalLog.addSignal("Shed Level", power::getShedLevel);
+		signalLog.addSignal("Drive Scale", driveScale);
+
+		drive.setExpiration(0.1);
+		controlLooper.setWorkerCount(RobotMap.Loops.controlWorkers);
+		teleop = new Teleop(ControllerInput.of(stick), drive, climber, driveScale);
+		controlLooper.add(teleop);
+		controlLooper.add(new Loop() {
+
+			@Override
+			public void start() {
+			}
+
+			@Override
+			public void stop() {
+			}
+
+			@Override
+			public void loop() {
+				controlLooper.log();
+				odometry.log();
+				drive.log();
+				climber.log();
+			}
+
+			@Override
+			public String getName() {
+				return "Logging";
+			}
+
+			@Override
+			public String[] reads() {
+				return new String[] { RobotMap.Loops.driveState };
+			}
+
+		}, RobotMap.Loops.logFrequency);
+		// Reads the drive outputs, so each record holds the cycle's outputs
+		// whatever order the loops were added in.
+		signalLog.setReads(RobotMap.Loops.driveState);
+		controlLooper.add(signalLog);
+		autoLooper.add(signalLog);
 	}
 
 	@Override
@@ -40,6 +174,16 @@ public class Robot extends SampleRobot {
 		chooser.addDefault("Default Auto", defaultAuto);
 		chooser.addObject("My Auto", customAuto);
 		SmartDashboard.putData("Auto modes", chooser);
+		pneumatics.enable();
+		odometryLooper.start();
+		sensorLooper.start();
+		telemetryLooper.start();
+		try {
+			profiles = ProfileStore.load(Paths.get(RobotMap.Autonomous.profileFile));
+			System.out.println("Loaded motion profiles " + profiles.getNames());
+		} catch (IOException e) {
+			DriverStation.reportError("Cannot load motion profiles: " + e.getMessage(), false);
+		}
 	}
 
 	/**
@@ -52,6 +196,9 @@ public class Robot extends SampleRobot {
 	 * You can add additional auto modes by adding additional comparisons to the
 	 * if-else structure below with additional strings. If using the
 	 * SendableChooser make sure to add them to the chooser code above as well.
+	 *
+	 * If the profile file has a motion profile with the same name as the
+	 * selected mode, it is followed instead.
 	 */
 	@Override
 	public void autonomous() {
@@ -59,34 +206,118 @@ public class Robot extends SampleRobot {
 		// String autoSelected = SmartDashboard.getString("Auto Selector",
 		// defaultAuto);
 		System.out.println("Auto selected: " + autoSelected);
+		openLog(true);
+
+		MotionProfile profile = profiles == null ? null : profiles.get(autoSelected);
+		if (profile != null) {
+			followProfile(profile);
+			return;
+		}
 
 		switch (autoSelected) {
 		case customAuto:
-			myRobot.setSafetyEnabled(false);
-			myRobot.drive(-0.5, 1.0); // spin at half speed
+			drive.setSafetyEnabled(false);
+			drive.drive(-0.5, 1.0); // spin at half speed
 			Timer.delay(2.0); // for 2 seconds
-			myRobot.drive(0.0, 0.0); // stop robot
+			drive.drive(0.0, 0.0); // stop robot
 			break;
 		case defaultAuto:
 		default:
-			myRobot.setSafetyEnabled(false);
-			myRobot.drive(-0.5, 0.0); // drive forwards half speed
+			drive.setSafetyEnabled(false);
+			drive.drive(-0.5, 0.0); // drive forwards half speed
 			Timer.delay(2.0); // for 2 seconds
-			myRobot.drive(0.0, 0.0); // stop robot
+			drive.drive(0.0, 0.0); // stop robot
 			break;
 		}
 	}
 
 	/**
-	 * Runs the motors with arcade steering.
+	 * Drives straight along a motion profile, measuring the distance travelled
+	 * with the drive encoders, until the profile ends or autonomous does.
+	 */
+	private void followProfile(MotionProfile profile) {
+		ProfileFollower follower = new ProfileFollower(profile,
+				() -> 0.5 * (leftEncoder.getDistance() + rightEncoder.getDistance()),
+				output -> {
+					drive.setMaxOutput(driveScale.getAsDouble());
+					drive.drive(-output, 0.0);
+				}, RobotMap.Autonomous.profileProportional,
+				RobotMap.Autonomous.profileVelocityFeedForward, RobotMap.Autonomous.profileAccelerationFeedForward);
+		follower.setWrites(RobotMap.Loops.driveState);
+		drive.setSafetyEnabled(true);
+		autoLooper.add(follower);
+		autoLooper.start();
+		while (isAutonomous() && isEnabled() && !follower.isFinished()) {
+			Timer.delay(RobotMap.Loops.idlePeriod);
+		}
+		autoLooper.stop();
+		autoLooper.remove(follower);
+		drive.drive(0.0, 0.0);
+	}
+
+	/**
+	 * Runs the motors with arcade steering and the climber from its buttons,
+	 * through {@link Teleop}. The controls and their logging are updated by
+	 * the control looper at their own fixed rates.
 	 */
 	@Override
 	public void operatorControl() {
-		myRobot.setSafetyEnabled(true);
+		openLog(false);
+		drive.setSafetyEnabled(true);
+		controlLooper.start();
 		while (isOperatorControl() && isEnabled()) {
-			myRobot.arcadeDrive(stick); // drive with arcade style (use right
-										// stick)
-			Timer.delay(0.005); // wait for a motor update time
+			Timer.delay(RobotMap.Loops.idlePeriod);
+		}
+		controlLooper.stop();
+		System.out.println(controlLooper.getSummary());
+	}
+
+	/**
+	 * @return the whole robot's power, as measured by the PDP and sampled
+	 *         through the sensor cache
+	 */
+	private Powered pdpPower(SensorCache sensors) {
+		SensorCache.Signal voltage = sensors.add("PDP Voltage", pdp::getVoltage, RobotMap.Power.samplePeriod);
+		SensorCache.Signal current = sensors.add("PDP Current", pdp::getTotalCurrent, RobotMap.Power.samplePeriod);
+		SensorCache.Signal temperature = sensors.add("PDP Temperature", pdp::getTemperature, 1.0);
+		return new Powered() {
+
+			@Override
+			public double voltage() {
+				return voltage.get();
+			}
+
+			@Override
+			public double current() {
+				return current.get();
+			}
+
+			@Override
+			public double temperature() {
+				return temperature.get();
+			}
+
+			@Override
+			public boolean isStale() {
+				return voltage.isStale() || current.isStale();
+			}
+
+		};
+	}
+
+	/**
+	 * Starts a new signal log file, or keeps the open one so a match's
+	 * autonomous and teleop periods end up in the same file.
+	 */
+	private void openLog(boolean rotate) {
+		if (signalLog.isOpen() && !rotate) {
+			return;
+		}
+		try {
+			Path path = signalLog.open();
+			System.out.println("Logging signals to " + path);
+		} catch (IOException e) {
+			DriverStation.reportError("Cannot open signal log: " + e.getMessage(), false);
 		}
 	}
 
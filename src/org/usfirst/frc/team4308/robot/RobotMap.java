@@ -13,6 +13,34 @@ public class RobotMap {
 		public static final int maxTimeSeconds = 75;
 	}
 
+	public static class Loops {
+		public static final double controlFrequency = 200.0;
+		public static final int controlWorkers = 1;
+		public static final double odometryFrequency = 500.0;
+		/**
+		 * Runs the CAN and JNI reads of the sensor cache, fault monitor and
+		 * power manager, apart from odometry. At least as fast as the fastest
+		 * cached signal.
+		 */
+		public static final double sensorFrequency = 100.0;
+		/**
+		 * CAN reads can block, so a stuck read does not hold up the rest of the
+		 * sensor looper's cycles.
+		 */
+		public static final int sensorWorkers = 1;
+		public static final double logFrequency = 10.0;
+		public static final double telemetryFrequency = 20.0;
+		public static final double powerFrequency = 50.0;
+		public static final double faultFrequency = 10.0;
+		public static final double idlePeriod = 0.05;
+
+		/**
+		 * Shared state written by the loops driving the robot and read by the
+		 * loops recording its outputs, so loopers run the recorders after.
+		 */
+		public static final String driveState = "drive";
+	}
+
 	public static class GearArm {
 		public static final int backwardChannel = 0;
 		public static final int forwardChannel = 1;
@@ -35,6 +63,11 @@ public class RobotMap {
 		public static final double distancePercentTolerance = 10.0;
 		public static final double defaultTimeout = 5.0;
 		public static final double angularToleranceDegrees = 2.0;
+
+		public static final String profileFile = "/home/lvuser/profiles.bin";
+		public static final double profileProportional = 0.05;
+		public static final double profileVelocityFeedForward = 1.0 / 120.0;
+		public static final double profileAccelerationFeedForward = 0.002;
 	}
 
 	public static class Constant {
@@ -100,6 +133,7 @@ public class RobotMap {
 
 		public static final double curveSensitivity = 1.0;
 		public static final double encoderPulseDistance = 0.042;
+		public static final double trackWidth = 23.0;
 
 		public static class Slow {
 			public static final double normal = 1.0;
@@ -107,6 +141,28 @@ public class RobotMap {
 		}
 	}
 
+	public static class Logging {
+		public static final String directory = "/home/lvuser/logs";
+		public static final String name = "match";
+		public static final int axes = 6;
+		public static final int buttons = 10;
+
+		/**
+		 * Records preallocated per match, enough for three minutes at the
+		 * control rate.
+		 */
+		public static final long capacity = (long) (Loops.controlFrequency * 180);
+	}
+
+	public static class Pneumatics {
+		public static final int pcmModule = 0;
+
+		/**
+		 * Seconds between fault polls of the PCM, which costs three CAN reads.
+		 */
+		public static final double faultPeriod = 0.5;
+	}
+
 	public static class Camera {
 		public static final int videoWidth = 640;
 		public static final int videoHeight = 480;
@@ -156,6 +212,21 @@ public class RobotMap {
 		public static final double dangerTemp = 85.0;
 		public static final double cautionThreshold = 0.9;
 		public static final double warningThreshold = 0.8;
+
+		/**
+		 * Predicted battery voltages at which load is shed and restored,
+		 * above the roboRIO's 6.8 V brownout.
+		 */
+		public static final double shedVoltage = 7.5;
+		public static final double restoreVoltage = 8.5;
+		public static final double minimumDriveScale = 0.5;
+		public static final double samplePeriod = 0.02;
+
+		/**
+		 * Samples of the PDP kept for its rolling statistics, one second at
+		 * the power frequency.
+		 */
+		public static final int statisticsWindow = (int) Loops.powerFrequency;
 	}
 
 }
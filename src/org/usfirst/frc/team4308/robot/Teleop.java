@@ -0,0 +1,93 @@
+package org.usfirst.frc.team4308.robot;
+
+import java.util.function.DoubleSupplier;
+
+import org.usfirst.frc.team4308.RobotDriveEdit;
+import org.usfirst.frc.team4308.util.ControllerInput;
+import org.usfirst.frc.team4308.util.Loop;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * Operator control of the robot: arcade drive from the driver's stick and the
+ * climber from a pair of buttons, both mapped by {@link OI}. The robot and
+ * {@link org.usfirst.frc.team4308.sim.Replay} build the same loop, so a replay
+ * runs exactly the code that drove the match.
+ * <p>
+ * The controls are mapped when the loop starts, once the controller is
+ * plugged in and reports its type. The drive's maximum output is set from the
+ * scale given each loop, so load shedding never writes to the drive from
+ * another thread.
+ */
+public class Teleop implements Loop {
+
+	private final ControllerInput input;
+	private final RobotDriveEdit drive;
+	private final SpeedController climber;
+	private final DoubleSupplier driveScale;
+
+	private OI oi;
+
+	public Teleop(ControllerInput input, RobotDriveEdit drive, SpeedController climber) {
+		this(input, drive, climber, () -> RobotDriveEdit.kDefaultMaxOutput);
+	}
+
+	/**
+	 * @param driveScale
+	 *            the drive's maximum output, such as a load's scale from the
+	 *            power manager
+	 */
+	public Teleop(ControllerInput input, RobotDriveEdit drive, SpeedController climber, DoubleSupplier driveScale) {
+		this.input = input;
+		this.drive = drive;
+		this.climber = climber;
+		this.driveScale = driveScale;
+	}
+
+	@Override
+	public void start() {
+		oi = new OI(input);
+	}
+
+	@Override
+	public void stop() {
+		drive.stopMotor();
+		climber.set(RobotMap.Climb.restingSpeed);
+	}
+
+	@Override
+	public void loop() {
+		drive.setMaxOutput(driveScale.getAsDouble());
+		drive.arcadeDrive(oi.getMoveValue(), oi.getTurnValue(), true);
+		switch (oi.getClimbButton().getInteger()) {
+		case 1:
+			climber.set(RobotMap.Climb.maxForward);
+			break;
+		case -1:
+			climber.set(RobotMap.Climb.maxBackward);
+			break;
+		default:
+			climber.set(RobotMap.Climb.restingSpeed);
+			break;
+		}
+	}
+
+	/**
+	 * @return the controls mapped when the loop last started, or null if it
+	 *         has not
+	 */
+	public OI getOI() {
+		return oi;
+	}
+
+	@Override
+	public String getName() {
+		return "Teleop";
+	}
+
+	@Override
+	public String[] writes() {
+		return new String[] { RobotMap.Loops.driveState };
+	}
+
+}
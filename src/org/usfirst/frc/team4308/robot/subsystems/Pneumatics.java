@@ -1,13 +1,15 @@
 package org.usfirst.frc.team4308.robot.subsystems;
 
+import org.usfirst.frc.team4308.util.AirCompressor;
 import org.usfirst.frc.team4308.util.Faulting;
 import org.usfirst.frc.team4308.util.Loggable;
 import org.usfirst.frc.team4308.util.Powered;
+import org.usfirst.frc.team4308.util.SensorCache;
+import org.usfirst.frc.team4308.util.Telemetry;
 
 import edu.wpi.first.wpilibj.Compressor;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.command.Subsystem;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 /**
  * Sample implementation of a pneumatics system, which can log its values to the
@@ -23,34 +25,74 @@ public class Pneumatics extends Subsystem implements Loggable, Powered, Faulting
 
 	public static final int[] solenoidSupplyVoltage = { 12, 24 };
 
+	/**
+	 * Bits of {@link #faultBits()} and {@link #stickyFaultBits()}, in the
+	 * order of {@link #faults()}.
+	 */
+	public static final int currentTooHighFault = 0;
+	public static final int notConnectedFault = 1;
+	public static final int shortedFault = 2;
+
+	private static final String[] faultNames = { "Current Too High", "Not Connected", "Shorted" };
+
 	private static final String defaultName = "Pneumatics";
 	private static final int supplyVoltage = 12;
+	private static final double currentPeriod = 0.02;
+	private static final double pressurePeriod = 0.1;
 
-	private Compressor compressor;
+	private AirCompressor compressor;
 
 	private boolean state;
+	private boolean paused;
+
+	private final SensorCache.Signal currentSignal;
+	private final SensorCache.Signal pressurizedSignal;
+
+	private final Telemetry.NumberHandle currentTelemetry;
+	private final Telemetry.BooleanHandle pressurizedTelemetry;
 
 	public Pneumatics(int pcmModule) {
 		this(defaultName, pcmModule);
 	}
 
 	public Pneumatics(String name, int pcmModule) {
+		this(name, AirCompressor.of(pcmModule));
+	}
+
+	public Pneumatics(String name, AirCompressor compressor) {
+		this(name, compressor, SensorCache.getInstance());
+	}
+
+	/**
+	 * Runs pneumatics from any compressor, such as a simulated one. The
+	 * compressor current and pressure switch are read through the sensor
+	 * cache, which must be run by a looper.
+	 */
+	public Pneumatics(String name, AirCompressor compressor, SensorCache sensors) {
 		super(name);
-		compressor = new Compressor(pcmModule);
+		this.compressor = compressor;
+		currentSignal = sensors.add(name + " Compressor Current", compressor::getCompressorCurrent, currentPeriod);
+		pressurizedSignal = sensors.addBoolean(name + " Pressurized", compressor::getPressureSwitchValue,
+				pressurePeriod);
+		Telemetry telemetry = Telemetry.getInstance();
+		currentTelemetry = telemetry.addNumber("Compressor Current");
+		pressurizedTelemetry = telemetry.addBoolean("Pneumatics Pressurized");
 	}
 
-	public boolean enable() {
+	public synchronized boolean enable() {
 		if (compressor == null) {
 			DriverStation.reportError("Cannot start compressor, does not exist!", true);
 			return false;
 		} else {
-			compressor.start();
+			if (!paused) {
+				compressor.start();
+			}
 			state = true;
 			return true;
 		}
 	}
 
-	public boolean disable() {
+	public synchronized boolean disable() {
 		if (compressor == null) {
 			DriverStation.reportError("Cannot stop compressor, does not exist!", true);
 			return false;
@@ -61,7 +103,7 @@ public class Pneumatics extends Subsystem implements Loggable, Powered, Faulting
 		}
 	}
 
-	public boolean toggle() {
+	public synchronized boolean toggle() {
 		if (state) {
 			return disable();
 		} else {
@@ -69,12 +111,33 @@ public class Pneumatics extends Subsystem implements Loggable, Powered, Faulting
 		}
 	}
 
+	/**
+	 * Stops the compressor without disabling pneumatics, such as to shed
+	 * load, and starts it again when unpaused if pneumatics are enabled. Safe
+	 * to call from another thread, such as a power manager's.
+	 */
+	public synchronized void setPaused(boolean paused) {
+		if (paused == this.paused || compressor == null) {
+			return;
+		}
+		this.paused = paused;
+		if (paused) {
+			compressor.stop();
+		} else if (state) {
+			compressor.start();
+		}
+	}
+
+	public boolean isPaused() {
+		return paused;
+	}
+
 	@Override
 	protected void initDefaultCommand() {
 	}
 
 	public boolean pressurized() {
-		return compressor.getPressureSwitchValue();
+		return pressurizedSignal.getBoolean();
 	}
 
 	@Override
@@ -84,7 +147,16 @@ public class Pneumatics extends Subsystem implements Loggable, Powered, Faulting
 
 	@Override
 	public double current() {
-		return compressor.getCompressorCurrent();
+		return currentSignal.get();
+	}
+
+	@Override
+	public boolean isStale() {
+		return currentSignal.isStale();
+	}
+
+	public SensorCache.Signal getCurrentSignal() {
+		return currentSignal;
 	}
 
 	@Override
@@ -94,8 +166,8 @@ public class Pneumatics extends Subsystem implements Loggable, Powered, Faulting
 
 	@Override
 	public void log() {
-		SmartDashboard.putNumber("Compressor Current", compressor.getCompressorCurrent());
-		SmartDashboard.putBoolean("Pneumatics Pressurized", compressor.getPressureSwitchValue());
+		currentTelemetry.set(currentSignal.get());
+		pressurizedTelemetry.set(pressurizedSignal.getBoolean());
 	}
 
 	@Override
@@ -110,6 +182,29 @@ public class Pneumatics extends Subsystem implements Loggable, Powered, Faulting
 				compressor.getCompressorNotConnectedStickyFault(), compressor.getCompressorShortedStickyFault() };
 	}
 
+	@Override
+	public long faultBits() {
+		return bit(compressor.getCompressorCurrentTooHighFault(), currentTooHighFault)
+				| bit(compressor.getCompressorNotConnectedFault(), notConnectedFault)
+				| bit(compressor.getCompressorShortedFault(), shortedFault);
+	}
+
+	@Override
+	public long stickyFaultBits() {
+		return bit(compressor.getCompressorCurrentTooHighStickyFault(), currentTooHighFault)
+				| bit(compressor.getCompressorNotConnectedStickyFault(), notConnectedFault)
+				| bit(compressor.getCompressorShortedStickyFault(), shortedFault);
+	}
+
+	private static long bit(boolean fault, int index) {
+		return fault ? 1L << index : 0L;
+	}
+
+	@Override
+	public String[] faultNames() {
+		return faultNames.clone();
+	}
+
 	@Override
 	public void clearStickyFaults() {
 		compressor.clearAllPCMStickyFaults();
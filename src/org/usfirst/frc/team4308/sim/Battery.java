@@ -0,0 +1,72 @@
+package org.usfirst.frc.team4308.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Battery with internal resistance, so the voltage sags as the loads draw
+ * more current. Each step the voltage is recomputed from the current the
+ * loads drew in the previous step.
+ */
+public class Battery implements Plant {
+
+	public static final double defaultOpenCircuitVoltage = 12.7;
+
+	/**
+	 * Battery plus main breaker and wiring.
+	 */
+	public static final double defaultResistance = 0.02;
+
+	private final double openCircuitVoltage;
+	private final double resistance;
+	private final List<DoubleSupplier> loads = new ArrayList<>();
+
+	private double voltage;
+	private double current;
+	private double minimumVoltage;
+
+	public Battery() {
+		this(defaultOpenCircuitVoltage, defaultResistance);
+	}
+
+	public Battery(double openCircuitVoltage, double resistance) {
+		this.openCircuitVoltage = openCircuitVoltage;
+		this.resistance = resistance;
+		this.voltage = openCircuitVoltage;
+		this.minimumVoltage = openCircuitVoltage;
+	}
+
+	/**
+	 * Adds a load whose current in amps is read every step.
+	 */
+	public void addLoad(DoubleSupplier current) {
+		loads.add(current);
+	}
+
+	@Override
+	public void step(double dt) {
+		double total = 0.0;
+		for (int i = 0; i < loads.size(); i++) {
+			total += loads.get(i).getAsDouble();
+		}
+		current = total;
+		voltage = Math.max(0.0, openCircuitVoltage - resistance * total);
+		if (voltage < minimumVoltage) {
+			minimumVoltage = voltage;
+		}
+	}
+
+	public double getVoltage() {
+		return voltage;
+	}
+
+	public double getCurrent() {
+		return current;
+	}
+
+	public double getMinimumVoltage() {
+		return minimumVoltage;
+	}
+
+}
@@ -0,0 +1,52 @@
+package org.usfirst.frc.team4308.sim;
+
+/**
+ * Brushed DC motor model from its datasheet curve: current is the voltage
+ * left after back EMF across the winding resistance, and torque is
+ * proportional to current.
+ */
+public class DcMotor {
+
+	public static final double nominalVoltage = 12.0;
+
+	private final double resistance;
+	private final double velocityConstant;
+	private final double torqueConstant;
+
+	/**
+	 * @param stallTorque
+	 *            newton meters at the nominal voltage
+	 * @param stallCurrent
+	 *            amps at the nominal voltage
+	 * @param freeSpeed
+	 *            radians per second with no load
+	 * @param freeCurrent
+	 *            amps with no load
+	 */
+	public DcMotor(double stallTorque, double stallCurrent, double freeSpeed, double freeCurrent) {
+		resistance = nominalVoltage / stallCurrent;
+		velocityConstant = freeSpeed / (nominalVoltage - resistance * freeCurrent);
+		torqueConstant = stallTorque / stallCurrent;
+	}
+
+	public static DcMotor cim() {
+		return new DcMotor(2.42, 133.0, 5310.0 * 2.0 * Math.PI / 60.0, 2.7);
+	}
+
+	public static DcMotor miniCim() {
+		return new DcMotor(1.41, 89.0, 5840.0 * 2.0 * Math.PI / 60.0, 3.0);
+	}
+
+	/**
+	 * @return the current drawn at a voltage and shaft speed in radians per
+	 *         second
+	 */
+	public double current(double voltage, double speed) {
+		return (voltage - speed / velocityConstant) / resistance;
+	}
+
+	public double torque(double current) {
+		return current * torqueConstant;
+	}
+
+}
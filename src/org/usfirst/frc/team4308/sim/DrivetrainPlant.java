@@ -0,0 +1,225 @@
+package org.usfirst.frc.team4308.sim;
+
+import org.usfirst.frc.team4308.util.DriveKinematics;
+
+/**
+ * Differential drivetrain physics: each side is a gearbox of identical motors
+ * driving wheels on the ground, and the robot is a rigid body with mass and
+ * rotational inertia, slowed by rolling friction. Motors are powered from the
+ * battery, so hard acceleration sags the voltage every output sees.
+ * <p>
+ * All quantities are SI: meters, kilograms, seconds, radians. The right side
+ * controllers are inverted by default, to match drives that send the right
+ * side negated outputs.
+ */
+public class DrivetrainPlant implements Plant {
+
+	private static final double gravity = 9.81;
+
+	/**
+	 * Speed in meters per second below which friction fades out, so a stopped
+	 * robot does not chatter back and forth.
+	 */
+	private static final double frictionSpeed = 0.02;
+
+	private final SimSpeedController[] left;
+	private final SimSpeedController[] right;
+	private final Battery battery;
+	private final DcMotor motor;
+	private final int motorsPerSide;
+
+	private double gearRatio = 10.71;
+	private double wheelRadius = 0.0762;
+	private double mass = 54.0;
+	private double momentOfInertia = 6.0;
+	private double trackWidth = 0.58;
+	private double rollingFriction = 0.03;
+	private double efficiency = 0.85;
+	private boolean rightInverted = true;
+
+	private double velocity;
+	private double angularVelocity;
+	private double leftDistance;
+	private double rightDistance;
+	private double x;
+	private double y;
+	private double heading;
+	private double leftCurrent;
+	private double rightCurrent;
+
+	/**
+	 * @param left
+	 *            controllers of the left side motors
+	 * @param right
+	 *            controllers of the right side motors, one per left motor
+	 */
+	public DrivetrainPlant(Battery battery, DcMotor motor, SimSpeedController[] left, SimSpeedController[] right) {
+		if (left.length == 0 || left.length != right.length) {
+			throw new IllegalArgumentException("Both sides need the same number of motors");
+		}
+		this.battery = battery;
+		this.motor = motor;
+		this.left = left.clone();
+		this.right = right.clone();
+		this.motorsPerSide = left.length;
+		battery.addLoad(this::getCurrent);
+	}
+
+	@Override
+	public void step(double dt) {
+		double halfTrack = 0.5 * trackWidth;
+		double leftSpeed = velocity - angularVelocity * halfTrack;
+		double rightSpeed = velocity + angularVelocity * halfTrack;
+
+		double voltage = battery.getVoltage();
+		double leftCommand = command(left, false);
+		double rightCommand = command(right, rightInverted);
+
+		double leftMotorCurrent = motor.current(leftCommand * voltage, leftSpeed / wheelRadius * gearRatio);
+		double rightMotorCurrent = motor.current(rightCommand * voltage, rightSpeed / wheelRadius * gearRatio);
+		// The controller draws current from the battery in proportion to its
+		// duty cycle.
+		leftCurrent = motorsPerSide * leftMotorCurrent * leftCommand;
+		rightCurrent = motorsPerSide * rightMotorCurrent * rightCommand;
+
+		double forceScale = motorsPerSide * gearRatio * efficiency / wheelRadius;
+		double halfFriction = 0.5 * rollingFriction * mass * gravity;
+		double leftForce = motor.torque(leftMotorCurrent) * forceScale - friction(leftSpeed, halfFriction);
+		double rightForce = motor.torque(rightMotorCurrent) * forceScale - friction(rightSpeed, halfFriction);
+
+		double acceleration = (leftForce + rightForce) / mass;
+		double angularAcceleration = (rightForce - leftForce) * halfTrack / momentOfInertia;
+		velocity += acceleration * dt;
+		angularVelocity += angularAcceleration * dt;
+
+		leftSpeed = velocity - angularVelocity * halfTrack;
+		rightSpeed = velocity + angularVelocity * halfTrack;
+		leftDistance += leftSpeed * dt;
+		rightDistance += rightSpeed * dt;
+
+		double deltaHeading = angularVelocity * dt;
+		double distance = velocity * dt;
+		if (Math.abs(deltaHeading) < 1e-9) {
+			x += distance * Math.cos(heading);
+			y += distance * Math.sin(heading);
+		} else {
+			double radius = distance / deltaHeading;
+			x += radius * (Math.sin(heading + deltaHeading) - Math.sin(heading));
+			y += radius * (Math.cos(heading) - Math.cos(heading + deltaHeading));
+		}
+		heading = DriveKinematics.wrap(heading + deltaHeading);
+	}
+
+	private static double command(SimSpeedController[] controllers, boolean inverted) {
+		double sum = 0.0;
+		for (int i = 0; i < controllers.length; i++) {
+			sum += controllers[i].getOutput();
+		}
+		double command = Math.max(-1.0, Math.min(1.0, sum / controllers.length));
+		return inverted ? -command : command;
+	}
+
+	private static double friction(double speed, double force) {
+		return force * Math.max(-1.0, Math.min(1.0, speed / frictionSpeed));
+	}
+
+	/**
+	 * @return the current drawn from the battery by both sides, in amps
+	 */
+	public double getCurrent() {
+		return leftCurrent + rightCurrent;
+	}
+
+	public double getLeftDistance() {
+		return leftDistance;
+	}
+
+	public double getRightDistance() {
+		return rightDistance;
+	}
+
+	public double getVelocity() {
+		return velocity;
+	}
+
+	public double getAngularVelocity() {
+		return angularVelocity;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	/**
+	 * @return the counterclockwise heading in radians
+	 */
+	public double getHeading() {
+		return heading;
+	}
+
+	/**
+	 * @return the heading in clockwise degrees, as a WPILib gyro reports it
+	 */
+	public double getGyroAngle() {
+		return -Math.toDegrees(heading);
+	}
+
+	public void setGearRatio(double gearRatio) {
+		this.gearRatio = gearRatio;
+	}
+
+	public void setWheelRadius(double wheelRadius) {
+		this.wheelRadius = wheelRadius;
+	}
+
+	public void setMass(double mass) {
+		this.mass = mass;
+	}
+
+	public void setMomentOfInertia(double momentOfInertia) {
+		this.momentOfInertia = momentOfInertia;
+	}
+
+	public void setTrackWidth(double trackWidth) {
+		this.trackWidth = trackWidth;
+	}
+
+	public double getTrackWidth() {
+		return trackWidth;
+	}
+
+	/**
+	 * Sets the rolling resistance as a fraction of the robot's weight.
+	 */
+	public void setRollingFriction(double coefficient) {
+		this.rollingFriction = coefficient;
+	}
+
+	public void setEfficiency(double efficiency) {
+		this.efficiency = efficiency;
+	}
+
+	public void setRightInverted(boolean inverted) {
+		this.rightInverted = inverted;
+	}
+
+	/**
+	 * Puts the robot back at rest at the origin.
+	 */
+	public void reset() {
+		velocity = 0.0;
+		angularVelocity = 0.0;
+		leftDistance = 0.0;
+		rightDistance = 0.0;
+		x = 0.0;
+		y = 0.0;
+		heading = 0.0;
+		leftCurrent = 0.0;
+		rightCurrent = 0.0;
+	}
+
+}
@@ -0,0 +1,14 @@
+package org.usfirst.frc.team4308.sim;
+
+/**
+ * Physical system advanced by the simulation in fixed time steps.
+ */
+public interface Plant {
+
+	/**
+	 * Advances the model by the given number of seconds using the current
+	 * actuator outputs.
+	 */
+	public void step(double dt);
+
+}
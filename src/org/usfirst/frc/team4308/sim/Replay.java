@@ -0,0 +1,384 @@
+package org.usfirst.frc.team4308.sim;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+import org.usfirst.frc.team4308.RobotDriveEdit;
+import org.usfirst.frc.team4308.robot.Teleop;
+import org.usfirst.frc.team4308.util.Clock;
+import org.usfirst.frc.team4308.util.ControllerInput;
+import org.usfirst.frc.team4308.util.Loop;
+import org.usfirst.frc.team4308.util.MultiSpeedController;
+import org.usfirst.frc.team4308.util.SignalLog;
+import org.usfirst.frc.team4308.util.SignalLogReader;
+
+/**
+ * Replays a match recorded by {@link SignalLog} through operator and drive
+ * code on a plain JVM, and checks the outputs the code computes now against
+ * the outputs recorded on the robot. Records are replayed back to back as
+ * fast as the CPU allows, with the {@link SimClock} stepped to each record's
+ * timestamp, so a replay is repeatable and a whole match takes milliseconds.
+ * <p>
+ * Recorded joysticks are read through {@link #input(String)}, and other
+ * recorded signals through {@link #signal(String)}. Each record, the loops
+ * run in the order added and then every expectation is compared.
+ */
+public class Replay {
+
+	public static final double defaultTolerance = 0.01;
+
+	/**
+	 * Most mismatches kept for the report; the rest are only counted.
+	 */
+	public static final int maxReported = 10;
+
+	private class Expectation {
+		private final String name;
+		private final int signal;
+		private final DoubleSupplier actual;
+		private final double tolerance;
+		private double maxError;
+
+		private Expectation(String name, DoubleSupplier actual, double tolerance) {
+			this.name = name;
+			this.signal = indexOf(name);
+			this.actual = actual;
+			this.tolerance = tolerance;
+		}
+	}
+
+	/**
+	 * A value that differed from the recording by more than its tolerance.
+	 */
+	public static class Mismatch {
+		public final int record;
+		public final double time;
+		public final String signal;
+		public final double expected;
+		public final double actual;
+
+		private Mismatch(int record, double time, String signal, double expected, double actual) {
+			this.record = record;
+			this.time = time;
+			this.signal = signal;
+			this.expected = expected;
+			this.actual = actual;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("record %d (%.3f s): %s expected %.6f, was %.6f", record, time, signal, expected,
+					actual);
+		}
+	}
+
+	public static class Result {
+		private final int records;
+		private final int replayed;
+		private final long mismatches;
+		private final List<Mismatch> reported;
+		private final String[] names;
+		private final double[] maxErrors;
+
+		private Result(int records, int replayed, long mismatches, List<Mismatch> reported, String[] names,
+				double[] maxErrors) {
+			this.records = records;
+			this.replayed = replayed;
+			this.mismatches = mismatches;
+			this.reported = reported;
+			this.names = names;
+			this.maxErrors = maxErrors;
+		}
+
+		public boolean passed() {
+			return mismatches == 0;
+		}
+
+		public int getRecordCount() {
+			return records;
+		}
+
+		/**
+		 * @return the number of records the code was run on
+		 */
+		public int getReplayedCount() {
+			return replayed;
+		}
+
+		public long getMismatchCount() {
+			return mismatches;
+		}
+
+		/**
+		 * @return the first mismatches, in the order found
+		 */
+		public List<Mismatch> getMismatches() {
+			return reported;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(passed() ? "passed" : "FAILED").append(": ").append(replayed).append(" of ")
+					.append(records).append(" records replayed, ").append(mismatches).append(" mismatches");
+			for (int i = 0; i < names.length; i++) {
+				builder.append("\n  ").append(names[i]).append(" max error ").append(maxErrors[i]);
+			}
+			for (Mismatch mismatch : reported) {
+				builder.append("\n  ").append(mismatch);
+			}
+			return builder.toString();
+		}
+	}
+
+	/**
+	 * Joystick inputs read from the current record.
+	 */
+	private class RecordedInput implements ControllerInput {
+		private final int axisCount;
+		private final int[] axes;
+		private final int[] buttons;
+
+		private RecordedInput(String prefix) {
+			List<Integer> axisSignals = new ArrayList<>();
+			for (int signal; (signal = log.indexOf(prefix + " Axis " + axisSignals.size())) >= 0;) {
+				axisSignals.add(signal);
+			}
+			List<Integer> buttonSignals = new ArrayList<>();
+			for (int signal; (signal = log.indexOf(prefix + " Button " + (buttonSignals.size() + 1))) >= 0;) {
+				buttonSignals.add(signal);
+			}
+			if (axisSignals.isEmpty() && buttonSignals.isEmpty()) {
+				throw new IllegalArgumentException("No joystick " + prefix + " was recorded");
+			}
+			axes = toArray(axisSignals);
+			buttons = toArray(buttonSignals);
+			int countSignal = log.indexOf(prefix + " Axis Count");
+			axisCount = countSignal >= 0 && log.getRecordCount() > 0 ? (int) log.get(0, countSignal) : axes.length;
+		}
+
+		@Override
+		public double getRawAxis(int axis) {
+			return axis >= 0 && axis < axes.length ? log.get(record, axes[axis]) : 0.0;
+		}
+
+		@Override
+		public boolean getRawButton(int button) {
+			return button >= 1 && button <= buttons.length && log.get(record, buttons[button - 1]) != 0.0;
+		}
+
+		@Override
+		public int getAxisCount() {
+			return axisCount;
+		}
+
+		@Override
+		public int getButtonCount() {
+			return buttons.length;
+		}
+	}
+
+	private final SignalLogReader log;
+	private final SimClock clock;
+	private final List<Loop> loops = new ArrayList<>();
+	private final List<Expectation> expectations = new ArrayList<>();
+	private int condition = -1;
+
+	private int record;
+
+	public Replay(SignalLogReader log, SimClock clock) {
+		this.log = log;
+		this.clock = clock;
+	}
+
+	private int indexOf(String name) {
+		int signal = log.indexOf(name);
+		if (signal < 0) {
+			throw new IllegalArgumentException("Signal " + name + " was not recorded");
+		}
+		return signal;
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * @param prefix
+	 *            name the joystick was recorded under
+	 * @return the recorded axes and buttons of the joystick
+	 */
+	public ControllerInput input(String prefix) {
+		return new RecordedInput(prefix);
+	}
+
+	/**
+	 * @return the value of a recorded signal at the current record
+	 */
+	public DoubleSupplier signal(String name) {
+		int signal = indexOf(name);
+		return () -> log.get(record, signal);
+	}
+
+	/**
+	 * Only runs the code on records where the signal is not zero, such as
+	 * while the robot was in teleop. Time still advances over other records.
+	 */
+	public void setCondition(String name) {
+		condition = name == null ? -1 : indexOf(name);
+	}
+
+	public void addLoop(Loop loop) {
+		loops.add(loop);
+	}
+
+	/**
+	 * Checks a value the code computes against the recorded signal of the
+	 * same name after every replayed record.
+	 */
+	public void expect(String name, DoubleSupplier actual, double tolerance) {
+		expectations.add(new Expectation(name, actual, tolerance));
+	}
+
+	/**
+	 * Replays every record of the log, from a reset clock.
+	 */
+	public Result run() {
+		int count = log.getRecordCount();
+		long mismatches = 0;
+		int replayed = 0;
+		List<Mismatch> reported = new ArrayList<>();
+		for (Expectation expectation : expectations) {
+			expectation.maxError = 0.0;
+		}
+
+		clock.reset();
+		long first = count > 0 ? log.getTimestamp(0) : 0;
+		boolean active = false;
+		for (record = 0; record < count; record++) {
+			long elapsed = log.getTimestamp(record) - first;
+			if (elapsed > clock.nanoTime()) {
+				clock.advanceNanos(elapsed - clock.nanoTime());
+			}
+			boolean enabled = condition < 0 || log.get(record, condition) != 0.0;
+			if (enabled != active) {
+				for (int i = 0; i < loops.size(); i++) {
+					if (enabled) {
+						loops.get(i).start();
+					} else {
+						loops.get(i).stop();
+					}
+				}
+				active = enabled;
+			}
+			if (!enabled) {
+				continue;
+			}
+			replayed++;
+			for (int i = 0; i < loops.size(); i++) {
+				loops.get(i).loop();
+			}
+			for (int i = 0; i < expectations.size(); i++) {
+				Expectation expectation = expectations.get(i);
+				double expected = log.get(record, expectation.signal);
+				double actual = expectation.actual.getAsDouble();
+				double error = Math.abs(actual - expected);
+				// Also catches a NaN on either side.
+				if (!(error <= expectation.tolerance)) {
+					mismatches++;
+					if (reported.size() < maxReported) {
+						reported.add(new Mismatch(record, clock.getSeconds(), expectation.name, expected, actual));
+					}
+				}
+				if (error > expectation.maxError || Double.isNaN(error)) {
+					expectation.maxError = error;
+				}
+			}
+		}
+		if (active) {
+			for (int i = 0; i < loops.size(); i++) {
+				loops.get(i).stop();
+			}
+		}
+		record = 0;
+
+		String[] names = new String[expectations.size()];
+		double[] maxErrors = new double[expectations.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = expectations.get(i).name;
+			maxErrors[i] = expectations.get(i).maxError;
+		}
+		return new Result(count, replayed, mismatches, reported, names, maxErrors);
+	}
+
+	/**
+	 * Replays the robot's operator control: the recorded drive stick read
+	 * through the same {@link Teleop} loop the robot runs, driving an arcade
+	 * {@link RobotDriveEdit} and the climber, checked against the recorded
+	 * outputs while in teleop. The drive is scaled as it was by load shedding,
+	 * if the scale was recorded.
+	 */
+	public static Result replayDrive(SignalLogReader log, SimClock clock, double tolerance) {
+		Replay replay = new Replay(log, clock);
+		SimSpeedController left = new SimSpeedController();
+		SimSpeedController right = new SimSpeedController();
+		RobotDriveEdit drive = new RobotDriveEdit(left, right);
+		MultiSpeedController climber = new MultiSpeedController("Climber", new SimSpeedController(),
+				new SimSpeedController());
+		replay.setCondition("Teleop");
+		DoubleSupplier scale = log.indexOf("Drive Scale") >= 0 ? replay.signal("Drive Scale")
+				: () -> RobotDriveEdit.kDefaultMaxOutput;
+		replay.addLoop(new Teleop(replay.input("Stick"), drive, climber, scale));
+		replay.expect("Left Drive", left::get, tolerance);
+		replay.expect("Right Drive", right::get, tolerance);
+		replay.expect("Climber", climber::get, tolerance);
+		return replay.run();
+	}
+
+	/**
+	 * Replays the drive through each log and reports the ones whose outputs
+	 * no longer match, exiting with a failure status if any do.
+	 *
+	 * <pre>
+	 * java Replay [-tolerance value] log.slog...
+	 * </pre>
+	 */
+	public static void main(String[] args) throws IOException {
+		double tolerance = defaultTolerance;
+		int first = 0;
+		if (args.length > 1 && args[0].equals("-tolerance")) {
+			tolerance = Double.parseDouble(args[1]);
+			first = 2;
+		}
+		if (first >= args.length) {
+			System.err.println("Usage: Replay [-tolerance value] log" + SignalLog.extension + "...");
+			System.exit(1);
+		}
+
+		SimClock clock = new SimClock();
+		Simulation.install(clock);
+		long wallStart = Clock.system.nanoTime();
+		int failures = 0;
+		for (int i = first; i < args.length; i++) {
+			Result result = replayDrive(SignalLogReader.load(Paths.get(args[i])), clock, tolerance);
+			System.out.println(args[i] + " " + result);
+			if (!result.passed()) {
+				failures++;
+			}
+		}
+		double wallSeconds = (Clock.system.nanoTime() - wallStart) / 1e9;
+		System.out.println((args.length - first) + " logs replayed in " + wallSeconds + " s, " + failures
+				+ " failed");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+}
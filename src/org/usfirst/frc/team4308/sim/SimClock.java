@@ -0,0 +1,37 @@
+package org.usfirst.frc.team4308.sim;
+
+import org.usfirst.frc.team4308.util.Clock;
+
+/**
+ * Clock that only moves when the simulation advances it, so simulated time
+ * can run as fast as the CPU allows.
+ */
+public class SimClock implements Clock {
+
+	private volatile long nanos;
+
+	@Override
+	public long nanoTime() {
+		return nanos;
+	}
+
+	public double getSeconds() {
+		return nanos / 1e9;
+	}
+
+	public void advance(double seconds) {
+		advanceNanos((long) (seconds * 1e9));
+	}
+
+	public synchronized void advanceNanos(long nanos) {
+		if (nanos < 0) {
+			throw new IllegalArgumentException("Time cannot go backwards: " + nanos);
+		}
+		this.nanos += nanos;
+	}
+
+	public synchronized void reset() {
+		nanos = 0;
+	}
+
+}
@@ -0,0 +1,119 @@
+package org.usfirst.frc.team4308.sim;
+
+import org.usfirst.frc.team4308.util.AirCompressor;
+
+/**
+ * Compressor filling a set of air tanks under closed loop control of the
+ * pressure switch. Air used by solenoids is taken out with
+ * {@link #consume(double)}.
+ */
+public class SimCompressor implements AirCompressor, Plant {
+
+	public static final double switchPressure = 120.0;
+
+	private double fillRate = 1.5;
+	private double runningCurrent = 10.0;
+
+	private volatile boolean enabled = true;
+	private volatile boolean running;
+	private volatile double pressure;
+
+	public SimCompressor(Battery battery) {
+		battery.addLoad(this::getCompressorCurrent);
+	}
+
+	@Override
+	public void step(double dt) {
+		running = enabled && pressure < switchPressure;
+		if (running) {
+			pressure = Math.min(switchPressure, pressure + fillRate * dt);
+		}
+	}
+
+	/**
+	 * Takes air out of the tanks.
+	 */
+	public void consume(double psi) {
+		pressure = Math.max(0.0, pressure - psi);
+	}
+
+	public double getPressure() {
+		return pressure;
+	}
+
+	/**
+	 * @param psiPerSecond
+	 *            rate the compressor raises the tank pressure
+	 */
+	public void setFillRate(double psiPerSecond) {
+		fillRate = psiPerSecond;
+	}
+
+	public void setRunningCurrent(double amps) {
+		runningCurrent = amps;
+	}
+
+	@Override
+	public void start() {
+		enabled = true;
+	}
+
+	@Override
+	public void stop() {
+		enabled = false;
+	}
+
+	@Override
+	public boolean enabled() {
+		return running;
+	}
+
+	/**
+	 * @return true while the pressure is below the switch pressure, as the
+	 *         PCM reports it
+	 */
+	@Override
+	public boolean getPressureSwitchValue() {
+		return pressure < switchPressure;
+	}
+
+	@Override
+	public double getCompressorCurrent() {
+		return running ? runningCurrent : 0.0;
+	}
+
+	@Override
+	public boolean getCompressorCurrentTooHighFault() {
+		return false;
+	}
+
+	@Override
+	public boolean getCompressorCurrentTooHighStickyFault() {
+		return false;
+	}
+
+	@Override
+	public boolean getCompressorShortedFault() {
+		return false;
+	}
+
+	@Override
+	public boolean getCompressorShortedStickyFault() {
+		return false;
+	}
+
+	@Override
+	public boolean getCompressorNotConnectedFault() {
+		return false;
+	}
+
+	@Override
+	public boolean getCompressorNotConnectedStickyFault() {
+		return false;
+	}
+
+	@Override
+	public void clearAllPCMStickyFaults() {
+	}
+
+}
@@ -0,0 +1,65 @@
+package org.usfirst.frc.team4308.sim;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * Speed controller that records its output for a {@link Plant} to read.
+ */
+public class SimSpeedController implements SpeedController {
+
+	private volatile double speed;
+	private volatile boolean inverted;
+	private long setCount;
+
+	@Override
+	public void set(double speed) {
+		this.speed = speed;
+		setCount++;
+	}
+
+	@Override
+	public double get() {
+		return speed;
+	}
+
+	/**
+	 * @return the output applied to the motor, after inversion
+	 */
+	public double getOutput() {
+		return inverted ? -speed : speed;
+	}
+
+	@Override
+	public void pidWrite(double output) {
+		set(output);
+	}
+
+	@Override
+	public void setInverted(boolean isInverted) {
+		inverted = isInverted;
+	}
+
+	@Override
+	public boolean getInverted() {
+		return inverted;
+	}
+
+	@Override
+	public void disable() {
+		speed = 0.0;
+	}
+
+	@Override
+	public void stopMotor() {
+		speed = 0.0;
+	}
+
+	/**
+	 * @return how many times the output has been set, the number of frames a
+	 *         CAN controller would have been sent
+	 */
+	public long getSetCount() {
+		return setCount;
+	}
+
+}
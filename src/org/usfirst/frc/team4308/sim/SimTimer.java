@@ -0,0 +1,79 @@
+package org.usfirst.frc.team4308.sim;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * WPILib {@link Timer} implementation backed by a {@link SimClock}, so code
+ * that reads the FPGA timestamp, such as motor safety, runs on simulated time.
+ * {@link #delay(double)} advances the simulated clock rather than sleeping.
+ */
+public class SimTimer implements Timer.StaticInterface {
+
+	private final SimClock clock;
+	private double matchLength = 150.0;
+
+	public SimTimer(SimClock clock) {
+		this.clock = clock;
+	}
+
+	@Override
+	public double getFPGATimestamp() {
+		return clock.getSeconds();
+	}
+
+	@Override
+	public double getMatchTime() {
+		return Math.max(0.0, matchLength - clock.getSeconds());
+	}
+
+	public void setMatchLength(double seconds) {
+		matchLength = seconds;
+	}
+
+	@Override
+	public void delay(double seconds) {
+		clock.advance(seconds);
+	}
+
+	@Override
+	public Timer.Interface newTimer() {
+		return new Timer.Interface() {
+			private double startTime = clock.getSeconds();
+			private double accumulated;
+			private boolean running;
+
+			@Override
+			public synchronized double get() {
+				return running ? accumulated + clock.getSeconds() - startTime : accumulated;
+			}
+
+			@Override
+			public synchronized void reset() {
+				accumulated = 0.0;
+				startTime = clock.getSeconds();
+			}
+
+			@Override
+			public synchronized void start() {
+				startTime = clock.getSeconds();
+				running = true;
+			}
+
+			@Override
+			public synchronized void stop() {
+				accumulated = get();
+				running = false;
+			}
+
+			@Override
+			public synchronized boolean hasPeriodPassed(double period) {
+				if (get() > period) {
+					startTime += period;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,263 @@
+package org.usfirst.frc.team4308.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+import org.usfirst.frc.team4308.RobotDriveEdit;
+import org.usfirst.frc.team4308.robot.RobotMap;
+import org.usfirst.frc.team4308.robot.subsystems.Pneumatics;
+import org.usfirst.frc.team4308.util.Clock;
+import org.usfirst.frc.team4308.util.FixedRateLooper;
+import org.usfirst.frc.team4308.util.Loop;
+import org.usfirst.frc.team4308.util.Looper;
+import org.usfirst.frc.team4308.util.Odometry;
+import org.usfirst.frc.team4308.util.Pose;
+import org.usfirst.frc.team4308.util.PowerManager;
+import org.usfirst.frc.team4308.util.Powered;
+import org.usfirst.frc.team4308.util.SensorCache;
+
+import edu.wpi.first.wpilibj.HLUsageReporting;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Runs loopers against simulated plants on a {@link SimClock}, on a plain JVM
+ * without the robot. Time advances in fixed physics steps as fast as the CPU
+ * allows; each looper runs a cycle whenever simulated time reaches its next
+ * release, on the calling thread, so runs are repeatable.
+ * <p>
+ * Call {@link #install(SimClock)} before creating any WPILib objects. Loopers
+ * time their loops with the real clock, so their statistics measure the CPU
+ * cost of the control code rather than simulated time.
+ */
+public class Simulation {
+
+	public static final double defaultPhysicsStep = 0.001;
+
+	private static class Scheduled {
+		private final Looper looper;
+		private final long periodNanos;
+		private long release;
+
+		private Scheduled(Looper looper, long periodNanos) {
+			this.looper = looper;
+			this.periodNanos = periodNanos;
+		}
+	}
+
+	private final SimClock clock;
+	private final long physicsStepNanos;
+	private final List<Plant> plants = new ArrayList<>();
+	private final List<Scheduled> loopers = new ArrayList<>();
+	private boolean running;
+
+	public Simulation(SimClock clock) {
+		this(clock, defaultPhysicsStep);
+	}
+
+	public Simulation(SimClock clock, double physicsStep) {
+		if (physicsStep <= 0.0) {
+			throw new IllegalArgumentException("Physics step must be positive: " + physicsStep);
+		}
+		this.clock = clock;
+		this.physicsStepNanos = (long) (physicsStep * 1e9);
+	}
+
+	/**
+	 * Points WPILib's timer at the simulated clock and turns off usage
+	 * reporting, which needs the robot's native libraries.
+	 */
+	public static void install(SimClock clock) {
+		Timer.SetImplementation(new SimTimer(clock));
+		HLUsageReporting.SetImplementation(new HLUsageReporting.Null());
+		RobotDriveEdit.setReportingEnabled(false);
+	}
+
+	/**
+	 * Adds a plant, stepped in the order added. Add the battery first so the
+	 * other plants see the voltage from the last step's load.
+	 */
+	public void addPlant(Plant plant) {
+		plants.add(plant);
+	}
+
+	public void addLooper(FixedRateLooper looper) {
+		addLooper(looper, looper.getFrequency());
+	}
+
+	public void addLooper(Looper looper, double frequency) {
+		if (frequency <= 0.0) {
+			throw new IllegalArgumentException("Frequency must be positive: " + frequency);
+		}
+		loopers.add(new Scheduled(looper, (long) (1e9 / frequency)));
+	}
+
+	/**
+	 * Starts the loops of every looper, without starting their threads.
+	 */
+	public void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		for (Scheduled scheduled : loopers) {
+			scheduled.release = clock.nanoTime();
+			for (Loop loop : scheduled.looper.getLoops()) {
+				loop.start();
+			}
+		}
+	}
+
+	public void stop() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		for (Scheduled scheduled : loopers) {
+			for (Loop loop : scheduled.looper.getLoops()) {
+				loop.stop();
+			}
+		}
+	}
+
+	/**
+	 * Advances simulated time, running loopers as they come due and stepping
+	 * the plants.
+	 */
+	public void run(double seconds) {
+		start();
+		long end = clock.nanoTime() + (long) (seconds * 1e9);
+		double dt = physicsStepNanos / 1e9;
+		while (clock.nanoTime() < end) {
+			long now = clock.nanoTime();
+			for (int i = 0; i < loopers.size(); i++) {
+				Scheduled scheduled = loopers.get(i);
+				if (now >= scheduled.release) {
+					scheduled.looper.loop();
+					scheduled.release += scheduled.periodNanos;
+				}
+			}
+			for (int i = 0; i < plants.size(); i++) {
+				plants.get(i).step(dt);
+			}
+			clock.advanceNanos(physicsStepNanos);
+		}
+	}
+
+	public SimClock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Benchmarks the drive code by simulating matches of scripted driving.
+	 *
+	 * <pre>
+	 * java Simulation [matches] [seconds per match]
+	 * </pre>
+	 */
+	public static void main(String[] args) {
+		int matches = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		double matchLength = args.length > 1 ? Double.parseDouble(args[1]) : 150.0;
+
+		SimClock clock = new SimClock();
+		install(clock);
+
+		long wallStart = Clock.system.nanoTime();
+		FixedRateLooper control = null;
+		for (int match = 0; match < matches; match++) {
+			clock.reset();
+			Battery battery = new Battery();
+			SimSpeedController[] left = { new SimSpeedController(), new SimSpeedController() };
+			SimSpeedController[] right = { new SimSpeedController(), new SimSpeedController() };
+			DrivetrainPlant drivetrain = new DrivetrainPlant(battery, DcMotor.cim(), left, right);
+			SimCompressor compressor = new SimCompressor(battery);
+			SensorCache sensors = new SensorCache("Sensors", clock);
+			Pneumatics pneumatics = new Pneumatics("Pneumatics", compressor, sensors);
+
+			RobotDriveEdit drive = new RobotDriveEdit(left[0], right[0], left[1], right[1]);
+			Odometry odometry = new Odometry("Odometry", drivetrain::getLeftDistance, drivetrain::getRightDistance,
+					null, drivetrain.getTrackWidth(), clock);
+
+			PowerManager power = new PowerManager("Power", battery::getVoltage, RobotMap.Power.shedVoltage,
+					RobotMap.Power.restoreVoltage, RobotMap.Power.breakerAmpLimit, RobotMap.Power.cautionThreshold,
+					RobotMap.Power.warningThreshold, PowerManager.defaultWindowSize, clock);
+			power.addConsumer(pneumatics);
+			power.addConsumer(new Powered() {
+
+				@Override
+				public double voltage() {
+					return battery.getVoltage();
+				}
+
+				@Override
+				public double current() {
+					return drivetrain.getCurrent();
+				}
+
+				@Override
+				public double temperature() {
+					return -1;
+				}
+
+			});
+			power.addLoad("Compressor", scale -> pneumatics.setPaused(scale < 1.0), 0.0);
+			DoubleSupplier driveScale = power.addLoad("Drive", RobotMap.Power.minimumDriveScale);
+
+			control = new FixedRateLooper("Control", 200.0);
+			control.add(new Loop() {
+
+				@Override
+				public void start() {
+					pneumatics.enable();
+				}
+
+				@Override
+				public void stop() {
+					drive.stopMotor();
+				}
+
+				@Override
+				public void loop() {
+					// Weave back and forth, like a driver crossing the field.
+					double t = clock.getSeconds();
+					drive.setMaxOutput(driveScale.getAsDouble());
+					drive.arcadeDrive(-Math.sin(0.4 * t), 0.5 * Math.sin(1.3 * t), false);
+				}
+
+				@Override
+				public String getName() {
+					return "Drive";
+				}
+
+			});
+
+			FixedRateLooper sensing = new FixedRateLooper("Odometry", 500.0);
+			sensing.add(odometry);
+			sensing.add(sensors);
+			sensing.add(power, 50.0);
+
+			Simulation simulation = new Simulation(clock);
+			simulation.addPlant(battery);
+			simulation.addPlant(drivetrain);
+			simulation.addPlant(compressor);
+			simulation.addLooper(sensing);
+			simulation.addLooper(control);
+			simulation.run(matchLength);
+			simulation.stop();
+
+			if (match == matches - 1) {
+				Pose pose = odometry.getPose(new Pose());
+				System.out.println("Plant pose (" + drivetrain.getX() + ", " + drivetrain.getY() + "), odometry " + pose);
+				System.out.println("Minimum battery voltage " + battery.getMinimumVoltage() + " V, tank pressure "
+						+ compressor.getPressure() + " psi");
+				System.out.println("Battery resistance estimate " + power.getResistance() + " ohm, load shed "
+						+ power.getShedCount() + " times");
+			}
+		}
+		double wallSeconds = (Clock.system.nanoTime() - wallStart) / 1e9;
+		System.out.println(matches + " matches of " + matchLength + " s in " + wallSeconds + " s, "
+				+ (matches * matchLength / wallSeconds) + "x real time");
+		System.out.println(control.getSummary());
+	}
+
+}
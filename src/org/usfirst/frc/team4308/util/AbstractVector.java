@@ -1,5 +1,10 @@
 package org.usfirst.frc.team4308.util;
 
+/**
+ * Vector of any number of dimensions backed by an array. For two and three
+ * dimensions use {@link Vector2} and {@link Vector3}, which keep their
+ * components in fields and do not allocate.
+ */
 public abstract class AbstractVector {
 
 	protected double[] dimensions;
@@ -11,7 +16,7 @@ public abstract class AbstractVector {
 	public double sqrMagnitude() {
 		double sum = 0;
 		for (double d : dimensions) {
-			sum += Math.pow(d, 2);
+			sum += d * d;
 		}
 		return sum;
 	}
@@ -21,8 +26,8 @@ public abstract class AbstractVector {
 	}
 
 	public AbstractVector inverse() {
-		for (double d : dimensions) {
-			d = -d;
+		for (int i = 0; i < dimensions.length; i++) {
+			dimensions[i] = -dimensions[i];
 		}
 		return this;
 	}
@@ -0,0 +1,109 @@
+package org.usfirst.frc.team4308.util;
+
+import edu.wpi.first.wpilibj.Compressor;
+
+/**
+ * The parts of a PCM {@link Compressor} used to run and monitor pneumatics,
+ * so they can be backed by a simulated compressor off the robot. Methods are
+ * named as on {@link Compressor}.
+ */
+public interface AirCompressor {
+
+	public void start();
+
+	public void stop();
+
+	public boolean enabled();
+
+	public boolean getPressureSwitchValue();
+
+	public double getCompressorCurrent();
+
+	public boolean getCompressorCurrentTooHighFault();
+
+	public boolean getCompressorCurrentTooHighStickyFault();
+
+	public boolean getCompressorShortedFault();
+
+	public boolean getCompressorShortedStickyFault();
+
+	public boolean getCompressorNotConnectedFault();
+
+	public boolean getCompressorNotConnectedStickyFault();
+
+	public void clearAllPCMStickyFaults();
+
+	/**
+	 * @return the compressor on the given PCM module
+	 */
+	public static AirCompressor of(int pcmModule) {
+		return of(new Compressor(pcmModule));
+	}
+
+	public static AirCompressor of(Compressor compressor) {
+		return new AirCompressor() {
+
+			@Override
+			public void start() {
+				compressor.start();
+			}
+
+			@Override
+			public void stop() {
+				compressor.stop();
+			}
+
+			@Override
+			public boolean enabled() {
+				return compressor.enabled();
+			}
+
+			@Override
+			public boolean getPressureSwitchValue() {
+				return compressor.getPressureSwitchValue();
+			}
+
+			@Override
+			public double getCompressorCurrent() {
+				return compressor.getCompressorCurrent();
+			}
+
+			@Override
+			public boolean getCompressorCurrentTooHighFault() {
+				return compressor.getCompressorCurrentTooHighFault();
+			}
+
+			@Override
+			public boolean getCompressorCurrentTooHighStickyFault() {
+				return compressor.getCompressorCurrentTooHighStickyFault();
+			}
+
+			@Override
+			public boolean getCompressorShortedFault() {
+				return compressor.getCompressorShortedFault();
+			}
+
+			@Override
+			public boolean getCompressorShortedStickyFault() {
+				return compressor.getCompressorShortedStickyFault();
+			}
+
+			@Override
+			public boolean getCompressorNotConnectedFault() {
+				return compressor.getCompressorNotConnectedFault();
+			}
+
+			@Override
+			public boolean getCompressorNotConnectedStickyFault() {
+				return compressor.getCompressorNotConnectedStickyFault();
+			}
+
+			@Override
+			public void clearAllPCMStickyFaults() {
+				compressor.clearAllPCMStickyFaults();
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,22 @@
+package org.usfirst.frc.team4308.util;
+
+/**
+ * Source of monotonic time for schedulers and timing instrumentation. Values
+ * are only meaningful relative to one another, exactly like
+ * {@link System#nanoTime()}.
+ *
+ * @see FixedRateLooper
+ */
+public interface Clock {
+
+	/**
+	 * The JVM's monotonic clock.
+	 */
+	public static final Clock system = System::nanoTime;
+
+	/**
+	 * @return the current time of this clock in nanoseconds
+	 */
+	public long nanoTime();
+
+}
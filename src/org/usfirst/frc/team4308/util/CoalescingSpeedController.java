@@ -0,0 +1,171 @@
+package org.usfirst.frc.team4308.util;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * Speed controller wrapper that only passes on a new output when it differs
+ * from the last one sent by more than an epsilon, so a CAN motor controller is
+ * not sent a frame every cycle while its output holds steady. The output is
+ * still resent at a minimum rate so the controller and motor safety do not time
+ * out, and a change to exactly zero is always sent.
+ */
+public class CoalescingSpeedController implements SpeedController, Loggable {
+
+	/**
+	 * About one step of a Talon SRX's 10 bit percent output.
+	 */
+	public static final double defaultEpsilon = 0.001;
+
+	/**
+	 * Half the default motor safety expiration.
+	 */
+	public static final double defaultRefreshPeriod = 0.05;
+
+	private final String name;
+	private final SpeedController controller;
+	private final Clock clock;
+
+	private double epsilon = defaultEpsilon;
+	private long refreshNanos = (long) (defaultRefreshPeriod * 1e9);
+
+	private double requested;
+	private double sent;
+	private boolean stale = true;
+	private long sentAt;
+
+	private long sentCount;
+	private long suppressedCount;
+
+	private final Telemetry.NumberHandle sentTelemetry;
+	private final Telemetry.NumberHandle suppressedTelemetry;
+
+	public CoalescingSpeedController(String name, SpeedController controller) {
+		this(name, controller, Clock.system);
+	}
+
+	public CoalescingSpeedController(String name, SpeedController controller, Clock clock) {
+		if (controller == null) {
+			throw new IllegalArgumentException("Controller cannot be null");
+		}
+		this.name = name;
+		this.controller = controller;
+		this.clock = clock;
+		Telemetry telemetry = Telemetry.getInstance();
+		sentTelemetry = telemetry.addNumber(name + " Frames Sent");
+		suppressedTelemetry = telemetry.addNumber(name + " Frames Suppressed");
+	}
+
+	@Override
+	public void set(double speed) {
+		requested = speed;
+		long now = clock.nanoTime();
+		if (!stale && now - sentAt < refreshNanos && Math.abs(speed - sent) <= epsilon
+				&& (speed != 0.0 || sent == 0.0)) {
+			suppressedCount++;
+			return;
+		}
+		controller.set(speed);
+		sent = speed;
+		sentAt = now;
+		stale = false;
+		sentCount++;
+	}
+
+	@Override
+	public void pidWrite(double output) {
+		set(output);
+	}
+
+	/**
+	 * @return the last output requested, which may not have been sent
+	 */
+	@Override
+	public double get() {
+		return requested;
+	}
+
+	@Override
+	public void setInverted(boolean isInverted) {
+		controller.setInverted(isInverted);
+		stale = true;
+	}
+
+	@Override
+	public boolean getInverted() {
+		return controller.getInverted();
+	}
+
+	@Override
+	public void disable() {
+		controller.disable();
+		stale = true;
+	}
+
+	@Override
+	public void stopMotor() {
+		controller.stopMotor();
+		requested = 0.0;
+		stale = true;
+	}
+
+	/**
+	 * Makes the next {@link #set(double)} go to the controller whatever its
+	 * value, for when the controller has been written to directly.
+	 */
+	public void invalidate() {
+		stale = true;
+	}
+
+	/**
+	 * Sets how far the output may move before it is resent.
+	 */
+	public void setEpsilon(double epsilon) {
+		if (epsilon < 0.0) {
+			throw new IllegalArgumentException("Epsilon cannot be negative: " + epsilon);
+		}
+		this.epsilon = epsilon;
+	}
+
+	public double getEpsilon() {
+		return epsilon;
+	}
+
+	/**
+	 * Sets the longest time in seconds an unchanged output goes without being
+	 * resent.
+	 */
+	public void setRefreshPeriod(double seconds) {
+		if (seconds <= 0.0) {
+			throw new IllegalArgumentException("Refresh period must be positive: " + seconds);
+		}
+		refreshNanos = (long) (seconds * 1e9);
+	}
+
+	public double getRefreshPeriod() {
+		return refreshNanos / 1e9;
+	}
+
+	public SpeedController getController() {
+		return controller;
+	}
+
+	public long getSentCount() {
+		return sentCount;
+	}
+
+	public long getSuppressedCount() {
+		return suppressedCount;
+	}
+
+	public void resetCounts() {
+		sentCount = 0;
+		suppressedCount = 0;
+	}
+
+	@Override
+	public void log() {
+		sentTelemetry.set(sentCount);
+		suppressedTelemetry.set(suppressedCount);
+	}
+
+}
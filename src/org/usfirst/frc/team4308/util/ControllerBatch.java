@@ -0,0 +1,105 @@
+package org.usfirst.frc.team4308.util;
+
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Steps a set of {@link PIDFController}s together from one {@link Loop}, each
+ * reading its measurement from a supplier and sending its output to a
+ * consumer. Register the batch on a {@link FixedRateLooper} running at the
+ * controllers' period to run dozens of loops from one thread.
+ * <p>
+ * Controllers can be added and removed while the batch is running; each
+ * change publishes a new immutable set, so the loop never locks.
+ */
+public class ControllerBatch implements Loop {
+
+	private static final class Members {
+		private final PIDFController[] controllers;
+		private final DoubleSupplier[] measurements;
+		private final DoubleConsumer[] outputs;
+
+		private Members(PIDFController[] controllers, DoubleSupplier[] measurements, DoubleConsumer[] outputs) {
+			this.controllers = controllers;
+			this.measurements = measurements;
+			this.outputs = outputs;
+		}
+	}
+
+	private final String name;
+
+	private volatile Members members = new Members(new PIDFController[0], new DoubleSupplier[0],
+			new DoubleConsumer[0]);
+
+	public ControllerBatch(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	public synchronized void add(PIDFController controller, DoubleSupplier measurement, DoubleConsumer output) {
+		Members current = members;
+		int n = current.controllers.length;
+		PIDFController[] controllers = Arrays.copyOf(current.controllers, n + 1);
+		DoubleSupplier[] measurements = Arrays.copyOf(current.measurements, n + 1);
+		DoubleConsumer[] outputs = Arrays.copyOf(current.outputs, n + 1);
+		controllers[n] = controller;
+		measurements[n] = measurement;
+		outputs[n] = output;
+		members = new Members(controllers, measurements, outputs);
+	}
+
+	public synchronized boolean remove(PIDFController controller) {
+		Members current = members;
+		for (int i = 0; i < current.controllers.length; i++) {
+			if (current.controllers[i] == controller) {
+				members = new Members(without(current.controllers, i, new PIDFController[0]),
+						without(current.measurements, i, new DoubleSupplier[0]),
+						without(current.outputs, i, new DoubleConsumer[0]));
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static <T> T[] without(T[] array, int index, T[] empty) {
+		T[] result = Arrays.copyOf(empty, array.length - 1);
+		System.arraycopy(array, 0, result, 0, index);
+		System.arraycopy(array, index + 1, result, index, result.length - index);
+		return result;
+	}
+
+	public int size() {
+		return members.controllers.length;
+	}
+
+	@Override
+	public void start() {
+		for (PIDFController controller : members.controllers) {
+			controller.reset();
+		}
+	}
+
+	@Override
+	public void stop() {
+		for (DoubleConsumer output : members.outputs) {
+			output.accept(0.0);
+		}
+	}
+
+	@Override
+	public void loop() {
+		Members members = this.members;
+		PIDFController[] controllers = members.controllers;
+		DoubleSupplier[] measurements = members.measurements;
+		DoubleConsumer[] outputs = members.outputs;
+		for (int i = 0; i < controllers.length; i++) {
+			outputs[i].accept(controllers[i].calculate(measurements[i].getAsDouble()));
+		}
+	}
+
+}
@@ -0,0 +1,46 @@
+package org.usfirst.frc.team4308.util;
+
+import edu.wpi.first.wpilibj.GenericHID;
+
+/**
+ * The axes and buttons of a driver station controller, so operator code can
+ * read a live joystick on the robot or recorded inputs during a replay.
+ * Methods are named as on {@link GenericHID}, with buttons numbered from 1.
+ */
+public interface ControllerInput {
+
+	public double getRawAxis(int axis);
+
+	public boolean getRawButton(int button);
+
+	public int getAxisCount();
+
+	public int getButtonCount();
+
+	public static ControllerInput of(GenericHID joystick) {
+		return new ControllerInput() {
+
+			@Override
+			public double getRawAxis(int axis) {
+				return joystick.getRawAxis(axis);
+			}
+
+			@Override
+			public boolean getRawButton(int button) {
+				return joystick.getRawButton(button);
+			}
+
+			@Override
+			public int getAxisCount() {
+				return joystick.getAxisCount();
+			}
+
+			@Override
+			public int getButtonCount() {
+				return joystick.getButtonCount();
+			}
+
+		};
+	}
+
+}
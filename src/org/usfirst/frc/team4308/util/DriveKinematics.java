@@ -0,0 +1,264 @@
+package org.usfirst.frc.team4308.util;
+
+/**
+ * Converts driver inputs into wheel outputs for tank, arcade, curvature and
+ * mecanum drive. Results are written into state held by this object rather
+ * than returned in new arrays, so a drive running every cycle of the match
+ * produces no garbage. The sine and cosine of the gyro angle are only
+ * recomputed when the angle changes.
+ * <p>
+ * Two sided modes write {@link #getLeft()} and {@link #getRight()}; mecanum
+ * modes write the four wheel speeds indexed by {@link #frontLeft},
+ * {@link #frontRight}, {@link #backLeft} and {@link #backRight}. Outputs are
+ * in the range -1.0 to 1.0 and are read back before the next call.
+ */
+public class DriveKinematics {
+
+	public static final int frontLeft = 0;
+	public static final int frontRight = 1;
+	public static final int backLeft = 2;
+	public static final int backRight = 3;
+	public static final int wheelCount = 4;
+
+	public static final double defaultQuickStopThreshold = 0.2;
+
+	private static final double twoPi = 2.0 * Math.PI;
+
+	private final double[] wheelSpeeds = new double[wheelCount];
+	private double left;
+	private double right;
+
+	private double gyroAngle = Double.NaN;
+	private double gyroCos;
+	private double gyroSin;
+
+	private double quickStopThreshold = defaultQuickStopThreshold;
+
+	/**
+	 * Two sided drive with each side following its own input.
+	 */
+	public void tank(double leftValue, double rightValue, boolean squaredInputs) {
+		leftValue = limit(leftValue);
+		rightValue = limit(rightValue);
+		if (squaredInputs) {
+			leftValue = square(leftValue);
+			rightValue = square(rightValue);
+		}
+		left = leftValue;
+		right = rightValue;
+	}
+
+	/**
+	 * Two sided drive from a forward value and a rotation value, with the
+	 * faster side held at the larger of the two.
+	 */
+	public void arcade(double moveValue, double rotateValue, boolean squaredInputs) {
+		moveValue = limit(moveValue);
+		rotateValue = limit(rotateValue);
+		if (squaredInputs) {
+			moveValue = square(moveValue);
+			rotateValue = square(rotateValue);
+		}
+
+		if (moveValue > 0.0) {
+			if (rotateValue > 0.0) {
+				left = moveValue - rotateValue;
+				right = Math.max(moveValue, rotateValue);
+			} else {
+				left = Math.max(moveValue, -rotateValue);
+				right = moveValue + rotateValue;
+			}
+		} else {
+			if (rotateValue > 0.0) {
+				left = -Math.max(-moveValue, rotateValue);
+				right = moveValue + rotateValue;
+			} else {
+				left = moveValue - rotateValue;
+				right = -Math.max(-moveValue, -rotateValue);
+			}
+		}
+	}
+
+	/**
+	 * Two sided drive where the rotation value sets the curvature of the path
+	 * rather than the turn rate, so the robot turns less sharply at low speed.
+	 * Quick turn rotates in place using the rotation value directly.
+	 */
+	public void curvature(double speed, double rotation, boolean quickTurn) {
+		speed = limit(speed);
+		rotation = limit(rotation);
+
+		double angularPower;
+		if (quickTurn && Math.abs(speed) < quickStopThreshold) {
+			angularPower = rotation;
+		} else {
+			angularPower = Math.abs(speed) * rotation;
+		}
+
+		double leftValue = speed + angularPower;
+		double rightValue = speed - angularPower;
+		double maxMagnitude = Math.max(Math.abs(leftValue), Math.abs(rightValue));
+		if (maxMagnitude > 1.0) {
+			leftValue /= maxMagnitude;
+			rightValue /= maxMagnitude;
+		}
+		left = leftValue;
+		right = rightValue;
+	}
+
+	/**
+	 * Two sided drive at a given output, with the curve setting the ratio
+	 * between the sides as {@code RobotDrive.drive} does: 0 drives straight,
+	 * and larger magnitudes turn more sharply, spinning in place at 1.
+	 *
+	 * @param sensitivity
+	 *            how sharply the ratio changes with the curve
+	 */
+	public void ratioCurve(double outputMagnitude, double curve, double sensitivity) {
+		if (curve == 0.0) {
+			left = outputMagnitude;
+			right = outputMagnitude;
+			return;
+		}
+		double value = Math.log(Math.abs(curve));
+		double ratio = (value - sensitivity) / (value + sensitivity);
+		if (ratio == 0.0) {
+			ratio = 1e-10;
+		}
+		if (curve < 0.0) {
+			left = outputMagnitude / ratio;
+			right = outputMagnitude;
+		} else {
+			left = outputMagnitude;
+			right = outputMagnitude / ratio;
+		}
+	}
+
+	/**
+	 * Mecanum drive from translation and rotation values, with the translation
+	 * rotated by the gyro angle for field oriented control.
+	 *
+	 * @param y
+	 *            forward speed, inverted to match the forward == -1.0 that
+	 *            joysticks produce
+	 * @param gyroAngle
+	 *            the current gyro angle in degrees
+	 */
+	public void mecanumCartesian(double x, double y, double rotation, double gyroAngle) {
+		y = -y;
+		if (gyroAngle != this.gyroAngle) {
+			double radians = Math.toRadians(gyroAngle);
+			gyroCos = Math.cos(radians);
+			gyroSin = Math.sin(radians);
+			this.gyroAngle = gyroAngle;
+		}
+		double xIn = x * gyroCos - y * gyroSin;
+		double yIn = x * gyroSin + y * gyroCos;
+
+		wheelSpeeds[frontLeft] = xIn + yIn + rotation;
+		wheelSpeeds[frontRight] = -xIn + yIn - rotation;
+		wheelSpeeds[backLeft] = -xIn + yIn + rotation;
+		wheelSpeeds[backRight] = xIn + yIn - rotation;
+		normalize(wheelSpeeds);
+	}
+
+	/**
+	 * Mecanum drive from a speed and direction of travel and a rotation value.
+	 *
+	 * @param direction
+	 *            the direction of travel in degrees
+	 */
+	public void mecanumPolar(double magnitude, double direction, double rotation) {
+		// Normalized for full power along the Cartesian axes.
+		magnitude = limit(magnitude) * Math.sqrt(2.0);
+		// The rollers are at 45 degree angles.
+		double radians = Math.toRadians(direction + 45.0);
+		double cos = Math.cos(radians);
+		double sin = Math.sin(radians);
+
+		wheelSpeeds[frontLeft] = sin * magnitude + rotation;
+		wheelSpeeds[frontRight] = cos * magnitude - rotation;
+		wheelSpeeds[backLeft] = cos * magnitude + rotation;
+		wheelSpeeds[backRight] = sin * magnitude - rotation;
+		normalize(wheelSpeeds);
+	}
+
+	/**
+	 * @return the left side output of the last two sided drive call
+	 */
+	public double getLeft() {
+		return left;
+	}
+
+	/**
+	 * @return the right side output of the last two sided drive call
+	 */
+	public double getRight() {
+		return right;
+	}
+
+	/**
+	 * @return the output of one wheel from the last mecanum drive call
+	 */
+	public double getWheelSpeed(int wheel) {
+		return wheelSpeeds[wheel];
+	}
+
+	/**
+	 * Below this speed quick turn curvature drive rotates in place.
+	 */
+	public void setQuickStopThreshold(double threshold) {
+		quickStopThreshold = threshold;
+	}
+
+	public double getQuickStopThreshold() {
+		return quickStopThreshold;
+	}
+
+	/**
+	 * Limit values to the -1.0 to +1.0 range.
+	 */
+	public static double limit(double value) {
+		return value > 1.0 ? 1.0 : (value < -1.0 ? -1.0 : value);
+	}
+
+	/**
+	 * Squares a value keeping its sign, to decrease sensitivity at low speeds.
+	 */
+	public static double square(double value) {
+		return value >= 0.0 ? value * value : -(value * value);
+	}
+
+	/**
+	 * Wraps an angle into the range -pi to pi.
+	 */
+	public static double wrap(double angle) {
+		if (angle > Math.PI || angle <= -Math.PI) {
+			angle -= twoPi * Math.floor((angle + Math.PI) / twoPi);
+			if (angle <= -Math.PI) {
+				angle += twoPi;
+			}
+		}
+		return angle;
+	}
+
+	/**
+	 * Scales all speeds down together if the magnitude of any is greater than
+	 * 1.0.
+	 */
+	public static void normalize(double[] speeds) {
+		double maxMagnitude = Math.abs(speeds[0]);
+		for (int i = 1; i < speeds.length; i++) {
+			double magnitude = Math.abs(speeds[i]);
+			if (maxMagnitude < magnitude) {
+				maxMagnitude = magnitude;
+			}
+		}
+		if (maxMagnitude > 1.0) {
+			for (int i = 0; i < speeds.length; i++) {
+				speeds[i] = speeds[i] / maxMagnitude;
+			}
+		}
+	}
+
+}
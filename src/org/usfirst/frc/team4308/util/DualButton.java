@@ -5,11 +5,15 @@ import edu.wpi.first.wpilibj.buttons.Trigger;
 
 public class DualButton extends Trigger {
 
-	private Joystick joystick;
+	private ControllerInput joystick;
 	private int primary;
 	private int secondary;
 
 	public DualButton(Joystick joystick, int primary, int secondary) {
+		this(ControllerInput.of(joystick), primary, secondary);
+	}
+
+	public DualButton(ControllerInput joystick, int primary, int secondary) {
 		this.joystick = joystick;
 		this.primary = primary;
 		this.secondary = secondary;
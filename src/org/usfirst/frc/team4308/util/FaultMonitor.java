@@ -0,0 +1,396 @@
+package org.usfirst.frc.team4308.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Polls {@link Faulting} sources, each at its own rate, and keeps their latest
+ * faults as bitmasks so control loops can check for faults without reading
+ * the hardware. Faults that start or clear between polls are passed to
+ * {@link Listener}s, and the number of times each fault occurred and how long
+ * it lasted are tracked.
+ * <p>
+ * Run the monitor on a looper at least as fast as the fastest source's poll
+ * rate. Polling does not allocate as long as the sources override
+ * {@link Faulting#faultBits()} and {@link Faulting#stickyFaultBits()}.
+ * Sources and listeners can be added while the monitor runs.
+ */
+public class FaultMonitor implements Loop {
+
+	/**
+	 * Told of fault edges, on the monitor's thread.
+	 */
+	public interface Listener {
+
+		public void faultRaised(Source source, int fault);
+
+		/**
+		 * @param seconds
+		 *            how long the fault was active
+		 */
+		public void faultCleared(Source source, int fault, double seconds);
+
+	}
+
+	/**
+	 * Reports every fault edge to the driver station as a warning.
+	 */
+	public static final Listener driverStation = new Listener() {
+
+		@Override
+		public void faultRaised(Source source, int fault) {
+			DriverStation.reportWarning(source.getName() + " fault: " + source.getFaultName(fault), false);
+		}
+
+		@Override
+		public void faultCleared(Source source, int fault, double seconds) {
+			DriverStation.reportWarning(source.getName() + " fault cleared: " + source.getFaultName(fault)
+					+ " after " + seconds + " s", false);
+		}
+
+	};
+
+	/**
+	 * Hands fault edges from the monitor's thread to another listener, which
+	 * is run by {@link #loop()} on another looper, so a slow listener such as
+	 * {@link FaultMonitor#driverStation} never delays the monitor. Edges are
+	 * passed through a {@link SpscRingBuffer} in preallocated records; if the
+	 * loop falls behind, the oldest edges are dropped and counted.
+	 */
+	public static class DeferredListener implements Listener, Loop {
+
+		public static final int defaultCapacity = 64;
+
+		private static final class Edge {
+			private Source source;
+			private int fault;
+			private boolean raised;
+			private double seconds;
+		}
+
+		private final String name;
+		private final Listener target;
+		private final SpscRingBuffer<Edge> edges;
+		private final SpscRingBuffer<Edge> free;
+		private final Consumer<Edge> dispatch = this::dispatch;
+
+		// Only touched by the monitor thread.
+		private Edge spare;
+
+		public DeferredListener(String name, Listener target) {
+			this(name, target, defaultCapacity);
+		}
+
+		/**
+		 * @param capacity
+		 *            the most edges waiting for the loop
+		 */
+		public DeferredListener(String name, Listener target, int capacity) {
+			this.name = name;
+			this.target = target;
+			edges = new SpscRingBuffer<>(capacity, true);
+			// Enough records for a full queue, one being dispatched and one
+			// being filled, so the monitor never runs out.
+			int records = edges.capacity() + 2;
+			free = new SpscRingBuffer<>(records);
+			for (int i = 0; i < records; i++) {
+				free.offer(new Edge());
+			}
+		}
+
+		@Override
+		public void faultRaised(Source source, int fault) {
+			publish(source, fault, true, 0.0);
+		}
+
+		@Override
+		public void faultCleared(Source source, int fault, double seconds) {
+			publish(source, fault, false, seconds);
+		}
+
+		private void publish(Source source, int fault, boolean raised, double seconds) {
+			Edge edge = spare != null ? spare : free.poll();
+			edge.source = source;
+			edge.fault = fault;
+			edge.raised = raised;
+			edge.seconds = seconds;
+			spare = edges.offer(edge);
+		}
+
+		private void dispatch(Edge edge) {
+			if (edge.raised) {
+				target.faultRaised(edge.source, edge.fault);
+			} else {
+				target.faultCleared(edge.source, edge.fault, edge.seconds);
+			}
+			free.offer(edge);
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void start() {
+		}
+
+		@Override
+		public void stop() {
+		}
+
+		/**
+		 * Passes every waiting edge to the target listener, oldest first.
+		 */
+		@Override
+		public void loop() {
+			edges.drain(dispatch);
+		}
+
+		/**
+		 * @return the number of edges dropped because the loop fell behind
+		 */
+		public long getDroppedCount() {
+			return edges.getDiscardedCount();
+		}
+	}
+
+	/**
+	 * A polled source and the latest snapshot of its faults.
+	 */
+	public static final class Source {
+		private final String name;
+		private final Faulting faulting;
+		private final String[] faultNames;
+		private final long periodNanos;
+		private final Telemetry.BooleanHandle[] telemetry;
+
+		private final AtomicLongArray raisedAt;
+		private final AtomicLongArray occurrences;
+		private final AtomicLongArray totalNanos;
+
+		private volatile long bits;
+		private volatile long stickyBits;
+		private volatile long polledAt;
+		private volatile boolean polled;
+
+		// Only touched by the monitor thread.
+		private long nextPoll;
+
+		private Source(String name, Faulting faulting, long periodNanos) {
+			this.name = name;
+			this.faulting = faulting;
+			this.faultNames = faulting.faultNames();
+			if (faultNames.length > Long.SIZE) {
+				throw new IllegalArgumentException(name + " has more than " + Long.SIZE + " faults");
+			}
+			this.periodNanos = periodNanos;
+			raisedAt = new AtomicLongArray(faultNames.length);
+			occurrences = new AtomicLongArray(faultNames.length);
+			totalNanos = new AtomicLongArray(faultNames.length);
+			telemetry = new Telemetry.BooleanHandle[faultNames.length];
+			Telemetry registry = Telemetry.getInstance();
+			for (int i = 0; i < faultNames.length; i++) {
+				telemetry[i] = registry.addBoolean(name + " " + faultNames[i]);
+			}
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Faulting getFaulting() {
+			return faulting;
+		}
+
+		public int getFaultCount() {
+			return faultNames.length;
+		}
+
+		public String getFaultName(int fault) {
+			return faultNames[fault];
+		}
+
+		/**
+		 * @return the active faults at the last poll, bit i set if fault i
+		 *         is active
+		 */
+		public long getBits() {
+			return bits;
+		}
+
+		public boolean isFaulted(int fault) {
+			return (bits & (1L << fault)) != 0;
+		}
+
+		public boolean isFaulted() {
+			return bits != 0;
+		}
+
+		/**
+		 * @return the sticky faults at the last poll
+		 */
+		public long getStickyBits() {
+			return stickyBits;
+		}
+
+		/**
+		 * @return the monitor clock time of the last poll, in nanoseconds
+		 */
+		public long getPollTime() {
+			return polledAt;
+		}
+
+		/**
+		 * @return the number of times the fault has been raised
+		 */
+		public long getOccurrences(int fault) {
+			return occurrences.get(fault);
+		}
+
+		/**
+		 * @return the total time the fault has been active as of the last
+		 *         poll, including the current occurrence
+		 */
+		public double getTotalSeconds(int fault) {
+			long total = totalNanos.get(fault);
+			if (isFaulted(fault)) {
+				total += polledAt - raisedAt.get(fault);
+			}
+			return total / 1e9;
+		}
+	}
+
+	private final String name;
+	private final Clock clock;
+
+	private volatile Source[] sources = new Source[0];
+	private volatile Listener[] listeners = new Listener[0];
+
+	public FaultMonitor(String name) {
+		this(name, Clock.system);
+	}
+
+	public FaultMonitor(String name, Clock clock) {
+		this.name = name;
+		this.clock = clock;
+	}
+
+	/**
+	 * @param period
+	 *            seconds between polls of the source
+	 * @return the snapshot of the source's faults
+	 */
+	public synchronized Source add(String name, Faulting faulting, double period) {
+		if (period <= 0.0) {
+			throw new IllegalArgumentException("Poll period must be positive: " + period);
+		}
+		Source source = new Source(name, faulting, (long) (period * 1e9));
+		Source[] current = sources;
+		Source[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = source;
+		sources = updated;
+		return source;
+	}
+
+	public synchronized void addListener(Listener listener) {
+		Listener[] current = listeners;
+		Listener[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = listener;
+		listeners = updated;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void start() {
+		long now = clock.nanoTime();
+		Source[] current = sources;
+		for (int i = 0; i < current.length; i++) {
+			current[i].nextPoll = now;
+		}
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	/**
+	 * Polls every source that is due.
+	 */
+	@Override
+	public void loop() {
+		long now = clock.nanoTime();
+		Source[] current = sources;
+		for (int i = 0; i < current.length; i++) {
+			Source source = current[i];
+			if (source.polled && now - source.nextPoll < 0) {
+				continue;
+			}
+			source.nextPoll = now + source.periodNanos;
+			poll(source, now);
+		}
+	}
+
+	private void poll(Source source, long now) {
+		long bits = source.faulting.faultBits();
+		source.stickyBits = source.faulting.stickyFaultBits();
+		long changed = bits ^ source.bits;
+		if (!source.polled) {
+			for (int fault = 0; fault < source.telemetry.length; fault++) {
+				source.telemetry[fault].set(false);
+			}
+		}
+		source.polledAt = now;
+		source.bits = bits;
+		source.polled = true;
+
+		Listener[] listeners = this.listeners;
+		while (changed != 0) {
+			int fault = Long.numberOfTrailingZeros(changed);
+			changed &= changed - 1;
+			if (fault >= source.faultNames.length) {
+				continue;
+			}
+			boolean raised = (bits & (1L << fault)) != 0;
+			source.telemetry[fault].set(raised);
+			if (raised) {
+				source.raisedAt.set(fault, now);
+				source.occurrences.incrementAndGet(fault);
+				for (int i = 0; i < listeners.length; i++) {
+					listeners[i].faultRaised(source, fault);
+				}
+			} else {
+				long duration = now - source.raisedAt.get(fault);
+				source.totalNanos.addAndGet(fault, duration);
+				for (int i = 0; i < listeners.length; i++) {
+					listeners[i].faultCleared(source, fault, duration / 1e9);
+				}
+			}
+		}
+	}
+
+	public Source[] getSources() {
+		return sources.clone();
+	}
+
+	/**
+	 * @return true if any source had an active fault at its last poll
+	 */
+	public boolean isFaulted() {
+		Source[] current = sources;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].bits != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -8,4 +8,44 @@ public interface Faulting {
 
 	public void clearStickyFaults();
 
+	/**
+	 * @return the active faults packed into bits, bit i set if fault i of
+	 *         {@link #faults()} is active. Override to read the faults without
+	 *         allocating.
+	 */
+	public default long faultBits() {
+		return toBits(faults());
+	}
+
+	/**
+	 * @return the sticky faults packed into bits, as {@link #faultBits()}
+	 */
+	public default long stickyFaultBits() {
+		return toBits(stickyFaults());
+	}
+
+	/**
+	 * @return a name for each fault, in the order of {@link #faults()}
+	 */
+	public default String[] faultNames() {
+		String[] names = new String[faults().length];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = "Fault " + i;
+		}
+		return names;
+	}
+
+	public static long toBits(boolean[] faults) {
+		if (faults.length > Long.SIZE) {
+			throw new IllegalArgumentException("At most " + Long.SIZE + " faults fit in a bitmask");
+		}
+		long bits = 0;
+		for (int i = 0; i < faults.length; i++) {
+			if (faults[i]) {
+				bits |= 1L << i;
+			}
+		}
+		return bits;
+	}
+
 }
@@ -0,0 +1,900 @@
+package org.usfirst.frc.team4308.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Looper that runs its loops on a dedicated thread at a fixed absolute period.
+ * Each cycle is released at {@code start + n * period} on a monotonic clock,
+ * so the time spent doing the work does not push back the following cycles
+ * the way a trailing {@code Timer.delay()} does.
+ * <p>
+ * When a cycle finishes after the next release time has already passed, the
+ * cycle is counted as an overrun and the {@link OverrunPolicy} decides whether
+ * the missed releases are run back-to-back or skipped. The lateness of every
+ * release (start jitter) is recorded and can be read from any thread.
+ * <p>
+ * Loops can be added with their own frequency, which must divide the looper's
+ * frequency evenly and be harmonic with every other registered frequency.
+ * Loops are run fastest first so slow work such as dashboard logging always
+ * runs after the control path in a shared cycle. Within a frequency, a loop
+ * that {@link Loop#writes() writes} some state is run before the loops that
+ * {@link Loop#reads() read} it.
+ * <p>
+ * With {@link #setWorkerCount(int) workers}, the loops of a cycle are shared
+ * between the scheduling thread and a fixed set of worker threads created when
+ * the looper starts. Loops are claimed in schedule order, and a loop only
+ * waits for the earlier loops it conflicts with (one writes what the other
+ * reads or writes), so loops that touch unrelated state run in parallel.
+ * <p>
+ * Registrations are kept in a schedule that is never modified once published.
+ * Adding or removing a loop builds a new schedule and swaps it in atomically,
+ * so the scheduling thread reads the current schedule once per cycle without
+ * locking or allocating, and other threads may change it at any time.
+ * <p>
+ * The execution time of every loop is recorded in a {@link LoopTiming}, which
+ * can be queried with {@link #getTiming(Loop)} and is published by
+ * {@link #log()} and {@link #getSummary()}.
+ * <p>
+ * A loop that throws is counted and reported, and the rest of the cycle still
+ * runs. A loop that throws or overruns its budget
+ * {@link #setFaultLimit(int) too many times in a row} is demoted to half its
+ * rate, and once it has been demoted {@link #maxDemotions} times it is
+ * quarantined and no longer run. A watchdog thread interrupts any loop still
+ * running after its {@link #setWatchdogTimeout(double) timeout}, which ends
+ * an interruptible wait, and the timeout counts as one of its faults. The loop
+ * is skipped until the stuck call returns and then run again. Quarantined and
+ * demoted loops return to their registered rate with {@link #reinstate(Loop)}.
+ * <p>
+ * The cycle only carries on past a stuck loop when another thread is free to
+ * run the rest: a thread cannot abandon the call it is making. Without
+ * workers the scheduling thread runs every loop, so a stuck loop holds up the
+ * looper until it returns. With workers, the other threads finish the cycle
+ * and, while the stuck call is on a worker, later cycles are released on time
+ * without it. Loopers hosting loops that may block, such as CAN or JNI reads,
+ * should have at least one worker.
+ */
+public class FixedRateLooper implements Looper, Loggable, Runnable {
+
+	/**
+	 * What to do with release times that were missed because a cycle overran.
+	 */
+	public enum OverrunPolicy {
+		/** Run the missed cycles immediately, one after another. */
+		CATCH_UP,
+		/** Drop the missed cycles and wait for the next future release. */
+		SKIP;
+	}
+
+	private static final OverrunPolicy defaultPolicy = OverrunPolicy.SKIP;
+	private static final int defaultMaxCatchUp = 2;
+	private static final long spinNanos = TimeUnit.MICROSECONDS.toNanos(100);
+	private static final double frequencyTolerance = 1e-6;
+	private static final int cursorIndexBits = 20;
+	private static final long cursorIndexMask = (1L << cursorIndexBits) - 1;
+	private static final int defaultFaultLimit = 10;
+
+	/**
+	 * How many times a faulting loop has its rate halved before it is
+	 * quarantined.
+	 */
+	public static final int maxDemotions = 3;
+	private static final int quarantined = maxDemotions + 1;
+
+	/**
+	 * By default the watchdog waits this many of a loop's own periods, and at
+	 * least {@link #defaultMinimumTimeout} seconds, so a garbage collection or
+	 * JIT pause is not taken for a hung loop.
+	 */
+	public static final int defaultTimeoutPeriods = 10;
+	public static final double defaultMinimumTimeout = 0.1;
+	private static final long minimumTimeoutNanos = Math.round(TimeUnit.SECONDS.toNanos(1) * defaultMinimumTimeout);
+
+	/**
+	 * A registered loop, run every {@code divisor} cycles of the looper, and the
+	 * timing recorded for it.
+	 */
+	private static class Entry {
+		private final Loop loop;
+		private final int divisor;
+		private final String[] reads;
+		private final String[] writes;
+		private final LoopTiming timing;
+
+		/** The last cycle in which this loop finished running. */
+		private volatile long doneCycle = -1;
+
+		/** Divisor for the running cycle, or 0 if the loop is not run. */
+		private int cycleDivisor;
+		/** Times the rate has been halved, or {@link #quarantined}. */
+		private volatile int demotions;
+		private int consecutiveFaults;
+
+		/** The thread running this loop and when it started, for the watchdog. */
+		private volatile Thread runner;
+		private volatile long startedAt;
+		/** Set when the watchdog has given up waiting for the current call. */
+		private volatile boolean hung;
+
+		private Entry(String looperName, Loop loop, int divisor, long budgetNanos) {
+			this.loop = loop;
+			this.divisor = divisor;
+			this.reads = loop.reads().clone();
+			this.writes = loop.writes().clone();
+			this.timing = new LoopTiming(looperName, loop.getName(), budgetNanos);
+		}
+
+		private boolean due(long tick) {
+			return cycleDivisor != 0 && tick % cycleDivisor == 0;
+		}
+
+		/**
+		 * Fixes the rate the loop runs at for the next cycle, so demotions made
+		 * during a cycle do not change which loops that cycle waits for.
+		 */
+		private void beginCycle() {
+			// The call the watchdog gave up on has returned, so the loop is
+			// run again from this cycle.
+			if (hung && runner == null) {
+				hung = false;
+			}
+			int level = demotions;
+			cycleDivisor = level >= quarantined ? 0 : divisor << level;
+		}
+
+		private boolean readsFrom(Entry other) {
+			return intersects(reads, other.writes);
+		}
+
+		private boolean conflicts(Entry other) {
+			return intersects(reads, other.writes) || intersects(writes, other.reads)
+					|| intersects(writes, other.writes);
+		}
+
+		private static boolean intersects(String[] a, String[] b) {
+			for (String x : a) {
+				for (String y : b) {
+					if (x.equals(y)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * An immutable run order, with the indices of the earlier loops each loop
+	 * has to wait for.
+	 */
+	private static class Schedule {
+		private final Entry[] entries;
+		private final int[][] predecessors;
+
+		private Schedule(Entry[] entries) {
+			this.entries = entries;
+			this.predecessors = new int[entries.length][];
+			for (int i = 0; i < entries.length; i++) {
+				int count = 0;
+				int[] found = new int[i];
+				for (int j = 0; j < i; j++) {
+					if (entries[i].conflicts(entries[j])) {
+						found[count++] = j;
+					}
+				}
+				predecessors[i] = Arrays.copyOf(found, count);
+			}
+		}
+	}
+
+	/**
+	 * Thread that helps the scheduling thread run the loops of each cycle.
+	 */
+	private class Worker extends Thread {
+
+		private Worker(int index) {
+			super(name + " Worker " + index);
+			setDaemon(true);
+			setPriority(Thread.MAX_PRIORITY);
+		}
+
+		@Override
+		public void run() {
+			long seen = cursor.get() >>> cursorIndexBits;
+			while (running) {
+				long cycle = cursor.get() >>> cursorIndexBits;
+				if (cycle == seen) {
+					LockSupport.park(this);
+					continue;
+				}
+				seen = cycle;
+				runClaimed(cycle);
+			}
+		}
+
+	}
+
+	/**
+	 * Thread that interrupts loops that run past their timeout and lets the
+	 * cycle stop waiting for them.
+	 */
+	private class Watchdog extends Thread {
+
+		private Watchdog() {
+			super(name + " Watchdog");
+			setDaemon(true);
+			setPriority(Thread.MAX_PRIORITY);
+		}
+
+		@Override
+		public void run() {
+			while (running) {
+				LockSupport.parkNanos(this, periodNanos);
+				Entry[] entries = schedule.get().entries;
+				for (int i = 0; i < entries.length; i++) {
+					Entry entry = entries[i];
+					long timeout = timeoutNanos > 0 ? timeoutNanos
+							: Math.max(defaultTimeoutPeriods * entry.divisor * periodNanos, minimumTimeoutNanos);
+					Thread runner = entry.runner;
+					if (runner != null && !entry.hung && clock.nanoTime() - entry.startedAt > timeout) {
+						entry.hung = true;
+						entry.timing.recordTimeout();
+						runner.interrupt();
+						DriverStation.reportError(name + ": " + entry.timing.getName() + " ran past "
+								+ timeout / 1000 + "us and was interrupted", false);
+					}
+				}
+			}
+		}
+
+	}
+
+	private final String name;
+	private final long periodNanos;
+	private final OverrunPolicy policy;
+	private final Clock clock;
+	private final double frequency;
+	private final AtomicReference<Schedule> schedule = new AtomicReference<Schedule>(new Schedule(new Entry[0]));
+
+	/** The running cycle in the high bits and the next unclaimed loop below. */
+	private final AtomicLong cursor = new AtomicLong();
+	private volatile Schedule cycleSchedule;
+	private volatile long cycleTick;
+
+	private long tick;
+	private int maxCatchUp = defaultMaxCatchUp;
+	private int workerCount;
+	private Worker[] workers = new Worker[0];
+	private Watchdog watchdog;
+	private volatile long timeoutNanos;
+	private volatile int faultLimit = defaultFaultLimit;
+
+	private volatile boolean running;
+	private volatile long cycleSequence;
+	private Thread thread;
+
+	private volatile long cycles;
+	private volatile long overruns;
+	private volatile long skipped;
+	private volatile long lastJitterNanos;
+	private volatile long maxJitterNanos;
+	private volatile long totalJitterNanos;
+
+	private final Telemetry.NumberHandle meanJitterTelemetry;
+	private final Telemetry.NumberHandle maxJitterTelemetry;
+	private final Telemetry.NumberHandle overrunTelemetry;
+	private final Telemetry.NumberHandle skippedTelemetry;
+
+	public FixedRateLooper(String name, double frequency) {
+		this(name, frequency, defaultPolicy);
+	}
+
+	public FixedRateLooper(String name, double frequency, OverrunPolicy policy) {
+		this(name, frequency, policy, Clock.system);
+	}
+
+	public FixedRateLooper(String name, double frequency, OverrunPolicy policy, Clock clock) {
+		if (frequency <= 0.0) {
+			throw new IllegalArgumentException("Loop frequency must be positive: " + frequency);
+		}
+		this.name = name;
+		this.frequency = frequency;
+		this.periodNanos = Math.round(TimeUnit.SECONDS.toNanos(1) / frequency);
+		this.policy = policy;
+		this.clock = clock;
+		Telemetry telemetry = Telemetry.getInstance();
+		meanJitterTelemetry = telemetry.addNumber(name + " Jitter Mean (us)");
+		maxJitterTelemetry = telemetry.addNumber(name + " Jitter Max (us)");
+		overrunTelemetry = telemetry.addNumber(name + " Overruns");
+		skippedTelemetry = telemetry.addNumber(name + " Skipped");
+	}
+
+	/**
+	 * Registers a loop to run every cycle of this looper.
+	 */
+	@Override
+	public boolean add(Loop loop) {
+		return add(loop, frequency);
+	}
+
+	/**
+	 * Registers a loop to run at the given frequency. If the looper is running
+	 * the loop is started before it is published to the scheduling thread.
+	 * 
+	 * @param loop
+	 *            the loop to run
+	 * @param frequency
+	 *            how often to run the loop in Hz, which must divide the
+	 *            frequency of this looper
+	 * @return false if the loop was already registered
+	 * @throws IllegalArgumentException
+	 *             if the frequency does not divide this looper's frequency or is
+	 *             not harmonic with the already registered frequencies
+	 */
+	public synchronized boolean add(Loop loop, double frequency) {
+		Entry[] current = schedule.get().entries;
+		if (indexOf(current, loop) >= 0) {
+			return false;
+		}
+		Entry entry = new Entry(name, loop, divisorOf(frequency, current), periodNanos);
+
+		// Faster loops first, then after the loops it reads from and before
+		// the loops that read from it, otherwise after its frequency group.
+		int first = 0;
+		while (first < current.length && current[first].divisor < entry.divisor) {
+			first++;
+		}
+		int end = first;
+		while (end < current.length && current[end].divisor == entry.divisor) {
+			end++;
+		}
+		int after = first;
+		int before = end;
+		for (int i = first; i < end; i++) {
+			if (entry.readsFrom(current[i])) {
+				after = i + 1;
+			}
+			if (before == end && current[i].readsFrom(entry)) {
+				before = i;
+			}
+		}
+		int index = before >= after ? before : end;
+
+		Entry[] next = new Entry[current.length + 1];
+		System.arraycopy(current, 0, next, 0, index);
+		next[index] = entry;
+		System.arraycopy(current, index, next, index + 1, current.length - index);
+
+		if (running) {
+			loop.start();
+		}
+		schedule.set(new Schedule(next));
+		return true;
+	}
+
+	/**
+	 * Unregisters a loop. If the looper is running, this waits for the cycle in
+	 * progress to finish before stopping the loop, so {@link Loop#stop()} never
+	 * overlaps a call to {@link Loop#loop()}.
+	 */
+	@Override
+	public synchronized boolean remove(Loop loop) {
+		Entry[] current = schedule.get().entries;
+		int index = indexOf(current, loop);
+		if (index < 0) {
+			return false;
+		}
+		Entry[] next = new Entry[current.length - 1];
+		System.arraycopy(current, 0, next, 0, index);
+		System.arraycopy(current, index + 1, next, index, next.length - index);
+		schedule.set(new Schedule(next));
+
+		if (running) {
+			awaitCycleEnd();
+			loop.stop();
+		}
+		return true;
+	}
+
+	@Override
+	public Loop[] getLoops() {
+		Entry[] current = schedule.get().entries;
+		Loop[] loops = new Loop[current.length];
+		for (int i = 0; i < current.length; i++) {
+			loops[i] = current[i].loop;
+		}
+		return loops;
+	}
+
+	private static int indexOf(Entry[] entries, Loop loop) {
+		for (int i = 0; i < entries.length; i++) {
+			if (entries[i].loop == loop) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int divisorOf(double frequency, Entry[] entries) {
+		if (frequency <= 0.0 || frequency > this.frequency) {
+			throw new IllegalArgumentException(
+					"Loop frequency " + frequency + " must be in (0, " + this.frequency + "] Hz");
+		}
+		double ratio = this.frequency / frequency;
+		int divisor = (int) Math.round(ratio);
+		if (Math.abs(ratio - divisor) > frequencyTolerance * ratio) {
+			throw new IllegalArgumentException(
+					"Loop frequency " + frequency + " does not evenly divide " + this.frequency + " Hz");
+		}
+		for (Entry entry : entries) {
+			int low = Math.min(divisor, entry.divisor);
+			int high = Math.max(divisor, entry.divisor);
+			if (high % low != 0) {
+				throw new IllegalArgumentException("Loop frequency " + frequency + " is not harmonic with "
+						+ this.frequency / entry.divisor + " Hz");
+			}
+		}
+		return divisor;
+	}
+
+	/**
+	 * Waits until the scheduling thread is not inside a cycle that may still be
+	 * using an older schedule.
+	 */
+	private void awaitCycleEnd() {
+		long sequence = cycleSequence;
+		if ((sequence & 1) == 0 || Thread.currentThread() == thread) {
+			return;
+		}
+		while (running && cycleSequence == sequence) {
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Sets how many worker threads share the loops of each cycle with the
+	 * scheduling thread. Zero, the default, runs every loop on the scheduling
+	 * thread, so a loop that blocks holds up the whole looper. Only takes
+	 * effect the next time the looper is started.
+	 */
+	public synchronized void setWorkerCount(int count) {
+		workerCount = Math.max(0, count);
+	}
+
+	public int getWorkerCount() {
+		return workerCount;
+	}
+
+	/**
+	 * Sets how long a single call to a loop may run before the watchdog
+	 * interrupts it and the other threads stop waiting for it. The timeout counts as a fault
+	 * towards demotion, and the loop is skipped until the call returns. By
+	 * default each loop may run for {@link #defaultTimeoutPeriods} of its own
+	 * periods, and at least {@link #defaultMinimumTimeout} seconds.
+	 *
+	 * @param seconds
+	 *            the timeout for every loop, or 0 for the default
+	 */
+	public void setWatchdogTimeout(double seconds) {
+		timeoutNanos = Math.max(0, Math.round(TimeUnit.SECONDS.toNanos(1) * seconds));
+	}
+
+	/**
+	 * Sets how many consecutive calls of a loop may throw or overrun its budget
+	 * before the loop is demoted.
+	 */
+	public void setFaultLimit(int limit) {
+		faultLimit = Math.max(1, limit);
+	}
+
+	/**
+	 * @return true if the loop has been quarantined and is no longer run
+	 */
+	public boolean isQuarantined(Loop loop) {
+		Entry[] entries = schedule.get().entries;
+		int index = indexOf(entries, loop);
+		return index >= 0 && entries[index].demotions >= quarantined;
+	}
+
+	/**
+	 * @return the frequency the loop is currently run at after demotions, or 0
+	 *         if it is quarantined or not registered
+	 */
+	public double getEffectiveFrequency(Loop loop) {
+		Entry[] entries = schedule.get().entries;
+		int index = indexOf(entries, loop);
+		if (index < 0 || entries[index].demotions >= quarantined) {
+			return 0.0;
+		}
+		return frequency / (entries[index].divisor << entries[index].demotions);
+	}
+
+	/**
+	 * Returns a demoted or quarantined loop to its registered rate. A loop the
+	 * watchdog gave up on is run again by itself once its stuck call returns,
+	 * and cannot be reinstated before then.
+	 *
+	 * @return false if the loop is not registered or is still stuck
+	 */
+	public boolean reinstate(Loop loop) {
+		Entry[] entries = schedule.get().entries;
+		int index = indexOf(entries, loop);
+		if (index < 0) {
+			return false;
+		}
+		Entry entry = entries[index];
+		if (entry.hung) {
+			if (entry.runner != null) {
+				return false;
+			}
+			entry.hung = false;
+		}
+		entry.demotions = 0;
+		return true;
+	}
+
+	/**
+	 * Starts every registered loop, the worker threads and then the scheduling
+	 * thread. Does nothing if the looper is already running.
+	 */
+	@Override
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		Looper.super.start();
+		tick = 0;
+		running = true;
+		workers = new Worker[workerCount];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(i);
+			workers[i].start();
+		}
+		watchdog = new Watchdog();
+		watchdog.start();
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+
+	/**
+	 * Stops the scheduling and worker threads, waits for the current cycle to
+	 * finish and then stops every registered loop.
+	 */
+	@Override
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(thread);
+		for (Worker worker : workers) {
+			LockSupport.unpark(worker);
+		}
+		LockSupport.unpark(watchdog);
+		try {
+			thread.join();
+			for (Worker worker : workers) {
+				worker.join();
+			}
+			watchdog.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+		workers = new Worker[0];
+		watchdog = null;
+		Looper.super.stop();
+	}
+
+	/**
+	 * Runs a single cycle: every loop that is due this cycle, fastest first,
+	 * shared with the worker threads if there are any.
+	 */
+	@Override
+	public void loop() {
+		cycleSequence++;
+		Schedule current = schedule.get();
+		for (int i = 0; i < current.entries.length; i++) {
+			current.entries[i].beginCycle();
+		}
+		long cycle = (cursor.get() >>> cursorIndexBits) + 1;
+		cycleSchedule = current;
+		cycleTick = tick;
+		cursor.set(cycle << cursorIndexBits);
+		Worker[] helpers = workers;
+		for (int i = 0; i < helpers.length; i++) {
+			LockSupport.unpark(helpers[i]);
+		}
+
+		runClaimed(cycle);
+
+		Entry[] entries = current.entries;
+		for (int i = 0; i < entries.length; i++) {
+			awaitDone(entries[i], tick, cycle);
+		}
+		tick++;
+		cycleSequence++;
+	}
+
+	/**
+	 * Claims and runs loops of the given cycle until none are left unclaimed.
+	 */
+	private void runClaimed(long cycle) {
+		while (true) {
+			long claim = cursor.get();
+			if (claim >>> cursorIndexBits != cycle) {
+				return;
+			}
+			int index = (int) (claim & cursorIndexMask);
+			// Read before claiming: while the cursor still holds this claim
+			// the cycle cannot end, so a successful claim proves these belong
+			// to it. Read after, they could already be the next cycle's.
+			Schedule current = cycleSchedule;
+			long tick = cycleTick;
+			if (index >= current.entries.length) {
+				return;
+			}
+			if (!cursor.compareAndSet(claim, claim + 1)) {
+				continue;
+			}
+			Entry entry = current.entries[index];
+			if (!entry.due(tick)) {
+				continue;
+			}
+			int[] predecessors = current.predecessors[index];
+			for (int i = 0; i < predecessors.length; i++) {
+				awaitDone(current.entries[predecessors[i]], tick, cycle);
+			}
+			// A call the watchdog gave up on may return cycles later, and must
+			// not mark the cycle in progress done.
+			if (entry.runner != null || runGuarded(entry)) {
+				entry.doneCycle = cycle;
+			}
+		}
+	}
+
+	/**
+	 * Runs a loop once, catching and counting anything it throws and demoting
+	 * it when it keeps throwing, overrunning or timing out.
+	 *
+	 * @return false if the watchdog gave up on the call before it returned
+	 */
+	private boolean runGuarded(Entry entry) {
+		boolean faulted;
+		boolean timedOut;
+		long start = clock.nanoTime();
+		entry.startedAt = start;
+		entry.runner = Thread.currentThread();
+		try {
+			entry.loop.loop();
+			faulted = entry.timing.record(clock.nanoTime() - start);
+		} catch (RuntimeException e) {
+			entry.timing.recordException(e);
+			if (entry.consecutiveFaults == 0) {
+				DriverStation.reportError(name + ": " + entry.timing.getName() + " threw " + e, true);
+			}
+			faulted = true;
+		} finally {
+			// Read before the runner is cleared, after which the scheduling
+			// thread may clear it.
+			timedOut = entry.hung;
+			entry.runner = null;
+			// Clear an interrupt from the watchdog so it cannot leak into the
+			// next loop run on this thread.
+			Thread.interrupted();
+		}
+
+		if (timedOut) {
+			faulted = true;
+		}
+		if (!faulted) {
+			entry.consecutiveFaults = 0;
+		} else if (++entry.consecutiveFaults >= faultLimit) {
+			entry.consecutiveFaults = 0;
+			int level = entry.demotions;
+			if (level < quarantined) {
+				entry.demotions = level + 1;
+				DriverStation.reportError(name + ": " + entry.timing.getName()
+						+ (level + 1 < quarantined ? " demoted after repeated faults" : " quarantined after repeated faults"),
+						false);
+			}
+		}
+		return !timedOut;
+	}
+
+	/**
+	 * Waits for a loop due this cycle to finish, unless the watchdog has given
+	 * up on it.
+	 */
+	private static void awaitDone(Entry entry, long tick, long cycle) {
+		if (entry.due(tick)) {
+			while (entry.doneCycle != cycle && !entry.hung) {
+				Thread.yield();
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		long release = clock.nanoTime();
+		while (running) {
+			waitUntil(release);
+			if (!running) {
+				break;
+			}
+
+			long start = clock.nanoTime();
+			recordJitter(start - release);
+			loop();
+			cycles++;
+
+			release += periodNanos;
+			long late = clock.nanoTime() - release;
+			if (late >= 0) {
+				overruns++;
+				long missed = late / periodNanos + 1;
+				if (policy == OverrunPolicy.SKIP || missed > maxCatchUp) {
+					release += missed * periodNanos;
+					tick += missed;
+					skipped += missed;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parks the thread until shortly before the deadline and spins for the
+	 * remainder, since parking alone is only accurate to the OS timer slack.
+	 */
+	private void waitUntil(long deadline) {
+		long remaining;
+		while (running && (remaining = deadline - clock.nanoTime()) > spinNanos) {
+			LockSupport.parkNanos(this, remaining - spinNanos);
+		}
+		while (running && deadline - clock.nanoTime() > 0) {
+			Thread.yield();
+		}
+	}
+
+	private void recordJitter(long jitter) {
+		lastJitterNanos = jitter;
+		totalJitterNanos += jitter;
+		if (jitter > maxJitterNanos) {
+			maxJitterNanos = jitter;
+		}
+	}
+
+	/**
+	 * @return the timing statistics of the given loop, or {@code null} if it
+	 *         is not run by this looper
+	 */
+	public LoopTiming getTiming(Loop loop) {
+		Entry[] entries = schedule.get().entries;
+		int index = indexOf(entries, loop);
+		return index < 0 ? null : entries[index].timing;
+	}
+
+	/**
+	 * @return a multi-line report of the looper's jitter and of every loop's
+	 *         execution time
+	 */
+	public String getSummary() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(name).append(": cycles=").append(cycles).append(" jitter mean=")
+				.append(Math.round(getMeanJitterNanos() / 1000)).append("us max=").append(maxJitterNanos / 1000)
+				.append("us overruns=").append(overruns).append(" skipped=").append(skipped);
+		for (Entry entry : schedule.get().entries) {
+			entry.timing.summarize(builder.append('\n').append("  "));
+		}
+		return builder.toString();
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public double getFrequency() {
+		return frequency;
+	}
+
+	public long getPeriodNanos() {
+		return periodNanos;
+	}
+
+	public OverrunPolicy getOverrunPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Limits how many missed cycles {@link OverrunPolicy#CATCH_UP} will run
+	 * back-to-back before falling back to skipping them.
+	 */
+	public void setMaxCatchUp(int cycles) {
+		maxCatchUp = Math.max(0, cycles);
+	}
+
+	/**
+	 * @return the number of cycles run since the statistics were last reset
+	 */
+	public long getCycleCount() {
+		return cycles;
+	}
+
+	/**
+	 * @return the number of cycles that finished after the following release
+	 *         time
+	 */
+	public long getOverrunCount() {
+		return overruns;
+	}
+
+	/**
+	 * @return the number of release times dropped because of overruns
+	 */
+	public long getSkippedCount() {
+		return skipped;
+	}
+
+	/**
+	 * @return how late the most recent cycle started, in nanoseconds
+	 */
+	public long getLastJitterNanos() {
+		return lastJitterNanos;
+	}
+
+	/**
+	 * @return the latest any cycle has started, in nanoseconds
+	 */
+	public long getMaxJitterNanos() {
+		return maxJitterNanos;
+	}
+
+	/**
+	 * @return the average start lateness of all cycles, in nanoseconds
+	 */
+	public double getMeanJitterNanos() {
+		long count = cycles;
+		return count == 0 ? 0.0 : (double) totalJitterNanos / count;
+	}
+
+	/**
+	 * Clears all jitter, overrun and loop timing statistics. Only call this
+	 * while the looper is stopped, the counters are owned by the scheduling
+	 * thread.
+	 */
+	public synchronized void resetStatistics() {
+		for (Entry entry : schedule.get().entries) {
+			entry.timing.reset();
+		}
+		cycles = 0;
+		overruns = 0;
+		skipped = 0;
+		lastJitterNanos = 0;
+		maxJitterNanos = 0;
+		totalJitterNanos = 0;
+	}
+
+	@Override
+	public void log() {
+		meanJitterTelemetry.set(getMeanJitterNanos() / 1000.0);
+		maxJitterTelemetry.set(maxJitterNanos / 1000.0);
+		overrunTelemetry.set(overruns);
+		skippedTelemetry.set(skipped);
+		Entry[] entries = schedule.get().entries;
+		for (int i = 0; i < entries.length; i++) {
+			entries[i].timing.log();
+		}
+	}
+
+}
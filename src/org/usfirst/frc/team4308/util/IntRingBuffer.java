@@ -0,0 +1,150 @@
+package org.usfirst.frc.team4308.util;
+
+/**
+ * Fixed capacity history of primitive values that discards the oldest value to
+ * make room for a new one, like {@link OverflowingArrayList}. Adding and
+ * indexed reads are constant time, values are never boxed, and nothing is
+ * allocated after construction.
+ * <p>
+ * Indices count from the oldest value held, so {@code get(0)} is the oldest
+ * and {@code get(size() - 1)} the newest.
+ *
+ * @see DoubleRingBuffer
+ * @see LongRingBuffer
+ */
+public class IntRingBuffer {
+
+	private final int[] values;
+	private int head;
+	private int size;
+
+	public IntRingBuffer(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Ring buffer capacity must be positive: " + capacity);
+		}
+		values = new int[capacity];
+	}
+
+	/**
+	 * Adds a value, discarding the oldest value if the buffer is full.
+	 */
+	public void add(int value) {
+		int capacity = values.length;
+		int tail = head + size;
+		if (tail >= capacity) {
+			tail -= capacity;
+		}
+		values[tail] = value;
+		if (size < capacity) {
+			size++;
+		} else if (++head == capacity) {
+			head = 0;
+		}
+	}
+
+	/**
+	 * Adds values in order, oldest first, discarding as many of the oldest
+	 * values as needed. Only the newest {@link #capacity()} values are kept if
+	 * more than that are added.
+	 */
+	public void addAll(int[] source, int offset, int length) {
+		int capacity = values.length;
+		if (length >= capacity) {
+			System.arraycopy(source, offset + length - capacity, values, 0, capacity);
+			head = 0;
+			size = capacity;
+			return;
+		}
+		int tail = head + size;
+		if (tail >= capacity) {
+			tail -= capacity;
+		}
+		int first = Math.min(length, capacity - tail);
+		System.arraycopy(source, offset, values, tail, first);
+		System.arraycopy(source, offset + first, values, 0, length - first);
+
+		int overflow = size + length - capacity;
+		if (overflow > 0) {
+			head += overflow;
+			if (head >= capacity) {
+				head -= capacity;
+			}
+			size = capacity;
+		} else {
+			size += length;
+		}
+	}
+
+	public void addAll(int[] source) {
+		addAll(source, 0, source.length);
+	}
+
+	/**
+	 * @param index
+	 *            the position counted from the oldest value held
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is not less than {@link #size()}
+	 */
+	public int get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		int position = head + index;
+		if (position >= values.length) {
+			position -= values.length;
+		}
+		return values[position];
+	}
+
+	/**
+	 * @return the oldest value held
+	 */
+	public int first() {
+		return get(0);
+	}
+
+	/**
+	 * @return the most recently added value
+	 */
+	public int last() {
+		return get(size - 1);
+	}
+
+	/**
+	 * Copies the held values, oldest first, into the destination array.
+	 *
+	 * @return the number of values copied, which is {@link #size()}
+	 */
+	public int copyTo(int[] destination, int offset) {
+		int first = Math.min(size, values.length - head);
+		System.arraycopy(values, head, destination, offset, first);
+		System.arraycopy(values, 0, destination, offset + first, size - first);
+		return size;
+	}
+
+	public int copyTo(int[] destination) {
+		return copyTo(destination, 0);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return values.length;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean isFull() {
+		return size == values.length;
+	}
+
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+
+}
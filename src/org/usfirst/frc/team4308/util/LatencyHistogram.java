@@ -0,0 +1,121 @@
+package org.usfirst.frc.team4308.util;
+
+/**
+ * Histogram of durations using fixed-width buckets that are allocated up front,
+ * so recording a sample never allocates. Durations beyond the last bucket are
+ * counted in an overflow bucket, the exact maximum is always kept.
+ * <p>
+ * Intended to be written by a single thread. Other threads may read it at any
+ * time, but a read that races a write may be off by the sample in progress.
+ *
+ * @see LoopTiming
+ */
+public class LatencyHistogram {
+
+	private final long bucketNanos;
+	private final long[] buckets;
+
+	private long overflow;
+	private long count;
+	private long totalNanos;
+	private long maxNanos;
+
+	/**
+	 * @param bucketNanos
+	 *            the width of each bucket in nanoseconds
+	 * @param bucketCount
+	 *            the number of buckets, samples beyond
+	 *            {@code bucketNanos * bucketCount} are counted as overflow
+	 */
+	public LatencyHistogram(long bucketNanos, int bucketCount) {
+		if (bucketNanos <= 0 || bucketCount <= 0) {
+			throw new IllegalArgumentException("Histogram buckets must have a positive width and count");
+		}
+		this.bucketNanos = bucketNanos;
+		this.buckets = new long[bucketCount];
+	}
+
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		long index = nanos / bucketNanos;
+		if (index < buckets.length) {
+			buckets[(int) index]++;
+		} else {
+			overflow++;
+		}
+		totalNanos += nanos;
+		if (nanos > maxNanos) {
+			maxNanos = nanos;
+		}
+		count++;
+	}
+
+	/**
+	 * Finds the duration below which the given fraction of samples fall. The
+	 * result is the upper edge of the bucket holding that sample, so it is
+	 * accurate to one bucket width.
+	 *
+	 * @param fraction
+	 *            the percentile as a fraction in [0, 1], e.g. 0.99 for p99
+	 * @return the percentile in nanoseconds, or 0 if nothing was recorded
+	 */
+	public long percentileNanos(double fraction) {
+		long total = count;
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(fraction * total);
+		if (rank < 1) {
+			rank = 1;
+		}
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i];
+			if (seen >= rank) {
+				return Math.min((i + 1) * bucketNanos, maxNanos);
+			}
+		}
+		return maxNanos;
+	}
+
+	public long medianNanos() {
+		return percentileNanos(0.5);
+	}
+
+	public long maxNanos() {
+		return maxNanos;
+	}
+
+	public double meanNanos() {
+		long total = count;
+		return total == 0 ? 0.0 : (double) totalNanos / total;
+	}
+
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * @return the number of samples longer than the histogram's range
+	 */
+	public long overflowCount() {
+		return overflow;
+	}
+
+	public long getBucketNanos() {
+		return bucketNanos;
+	}
+
+	public void reset() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = 0;
+		}
+		overflow = 0;
+		count = 0;
+		totalNanos = 0;
+		maxNanos = 0;
+	}
+
+}
@@ -8,4 +8,29 @@ public interface Loop {
 	
 	public void loop();
 
+	/**
+	 * @return a name identifying this loop in timing reports
+	 */
+	public default String getName() {
+		String name = getClass().getSimpleName();
+		return name.isEmpty() ? getClass().getName() : name;
+	}
+
+	/**
+	 * Names the shared state this loop reads, such as {@code "odometry"}. A
+	 * looper runs the loops writing that state first and never runs them at
+	 * the same time as this loop.
+	 */
+	public default String[] reads() {
+		return new String[0];
+	}
+
+	/**
+	 * Names the shared state this loop writes. A looper never runs this loop
+	 * at the same time as another loop reading or writing that state.
+	 */
+	public default String[] writes() {
+		return new String[0];
+	}
+
 }
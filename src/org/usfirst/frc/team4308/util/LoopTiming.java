@@ -0,0 +1,150 @@
+package org.usfirst.frc.team4308.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution time statistics of a single {@link Loop} run by a
+ * {@link FixedRateLooper}. Every call to {@link Loop#loop()} is recorded into a
+ * preallocated {@link LatencyHistogram}, and calls that take longer than the
+ * loop's budget are counted as overruns. Calls that threw, and calls the
+ * looper's watchdog gave up on, are counted as well.
+ */
+public class LoopTiming implements Loggable {
+
+	private static final long bucketNanos = TimeUnit.MICROSECONDS.toNanos(10);
+	private static final int bucketCount = 2000;
+
+	private final String name;
+	private final LatencyHistogram histogram = new LatencyHistogram(bucketNanos, bucketCount);
+
+	private volatile long budgetNanos;
+	private volatile long overruns;
+	private volatile long exceptions;
+	private volatile long timeouts;
+	private volatile RuntimeException lastException;
+
+	private final Telemetry.NumberHandle medianTelemetry;
+	private final Telemetry.NumberHandle p99Telemetry;
+	private final Telemetry.NumberHandle maxTelemetry;
+	private final Telemetry.NumberHandle overrunTelemetry;
+	private final Telemetry.NumberHandle exceptionTelemetry;
+	private final Telemetry.NumberHandle timeoutTelemetry;
+
+	public LoopTiming(String name, long budgetNanos) {
+		this(null, name, budgetNanos);
+	}
+
+	/**
+	 * @param looperName
+	 *            name of the looper running the loop, which prefixes the
+	 *            telemetry keys so the same loop run by two loopers is logged
+	 *            separately, or null for no prefix
+	 */
+	public LoopTiming(String looperName, String name, long budgetNanos) {
+		this.name = name;
+		this.budgetNanos = budgetNanos;
+		String key = looperName == null ? name : looperName + " " + name;
+		Telemetry telemetry = Telemetry.getInstance();
+		medianTelemetry = telemetry.addNumber(key + " p50 (us)");
+		p99Telemetry = telemetry.addNumber(key + " p99 (us)");
+		maxTelemetry = telemetry.addNumber(key + " Max (us)");
+		overrunTelemetry = telemetry.addNumber(key + " Overruns");
+		exceptionTelemetry = telemetry.addNumber(key + " Exceptions");
+		timeoutTelemetry = telemetry.addNumber(key + " Timeouts");
+	}
+
+	/**
+	 * Records the duration of a completed call.
+	 *
+	 * @return true if the call took longer than the budget
+	 */
+	public boolean record(long nanos) {
+		histogram.record(nanos);
+		if (nanos > budgetNanos) {
+			overruns++;
+			return true;
+		}
+		return false;
+	}
+
+	public void recordException(RuntimeException exception) {
+		lastException = exception;
+		exceptions++;
+	}
+
+	public void recordTimeout() {
+		timeouts++;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public LatencyHistogram getHistogram() {
+		return histogram;
+	}
+
+	public long getBudgetNanos() {
+		return budgetNanos;
+	}
+
+	/**
+	 * Sets how long a single call to the loop may take before it is counted as
+	 * an overrun.
+	 */
+	public void setBudgetNanos(long budgetNanos) {
+		this.budgetNanos = budgetNanos;
+	}
+
+	public long getOverrunCount() {
+		return overruns;
+	}
+
+	public long getExceptionCount() {
+		return exceptions;
+	}
+
+	/**
+	 * @return the most recent exception thrown by the loop, or {@code null}
+	 */
+	public RuntimeException getLastException() {
+		return lastException;
+	}
+
+	/**
+	 * @return the number of calls that ran past the watchdog timeout
+	 */
+	public long getTimeoutCount() {
+		return timeouts;
+	}
+
+	public void reset() {
+		histogram.reset();
+		overruns = 0;
+		exceptions = 0;
+		timeouts = 0;
+		lastException = null;
+	}
+
+	/**
+	 * Appends a one line summary of this loop, with times in microseconds.
+	 */
+	public StringBuilder summarize(StringBuilder builder) {
+		return builder.append(name).append(": n=").append(histogram.count()).append(" p50=")
+				.append(histogram.medianNanos() / 1000).append("us p99=")
+				.append(histogram.percentileNanos(0.99) / 1000).append("us max=")
+				.append(histogram.maxNanos() / 1000).append("us overruns=").append(overruns).append(" exceptions=")
+				.append(exceptions).append(" timeouts=").append(timeouts);
+	}
+
+	@Override
+	public void log() {
+		medianTelemetry.set(histogram.medianNanos() / 1000.0);
+		p99Telemetry.set(histogram.percentileNanos(0.99) / 1000.0);
+		maxTelemetry.set(histogram.maxNanos() / 1000.0);
+		overrunTelemetry.set(overruns);
+		exceptionTelemetry.set(exceptions);
+		timeoutTelemetry.set(timeouts);
+	}
+
+}
@@ -1,25 +1,47 @@
 package org.usfirst.frc.team4308.util;
 
-import java.util.ArrayList;
-
+/**
+ * Runs a set of {@link Loop}s. Each looper keeps its own registrations, and
+ * loops may be added or removed from any thread while it is running.
+ */
 public interface Looper {
 
-	public ArrayList<Loop> loops = new ArrayList<Loop>();
+	/**
+	 * Registers a loop with this looper. If the looper is already running the
+	 * loop is started before it is first run.
+	 *
+	 * @return false if the loop was already registered
+	 */
+	public boolean add(Loop loop);
+
+	/**
+	 * Unregisters a loop from this looper. If the looper is running the loop is
+	 * stopped once it is no longer being run.
+	 *
+	 * @return false if the loop was not registered
+	 */
+	public boolean remove(Loop loop);
+
+	/**
+	 * @return the registered loops in the order they are run, as a snapshot
+	 *         that must not be modified
+	 */
+	public Loop[] getLoops();
 
 	public default void start() {
-		for (Loop loop : loops) {
+		for (Loop loop : getLoops()) {
 			loop.start();
 		}
 	}
 
 	public default void stop() {
-		for (Loop loop : loops) {
+		for (Loop loop : getLoops()) {
 			loop.stop();
 		}
 	}
 
 	public default void loop() {
-		for (Loop loop : loops) {
+		for (Loop loop : getLoops()) {
 			loop.loop();
 		}
 	}
@@ -0,0 +1,135 @@
+package org.usfirst.frc.team4308.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Position, velocity and acceleration sampled at a fixed time step, stored as
+ * fixed size records in a {@link ByteBuffer}. The buffer may be a slice of a
+ * memory mapped {@link ProfileStore} file, in which case nothing is copied
+ * onto the heap. Samples are found by time with a single division, and reads
+ * never change the buffer's position, so a profile can be shared between
+ * threads.
+ *
+ * @see ProfileGenerator
+ */
+public class MotionProfile {
+
+	public static final int maxNameBytes = 32;
+
+	/**
+	 * Position, velocity and acceleration as 32 bit floats.
+	 */
+	public static final int recordBytes = 12;
+
+	private static final int velocityOffset = 4;
+	private static final int accelerationOffset = 8;
+
+	private final String name;
+	private final double timeStep;
+	private final int sampleCount;
+	private final ByteBuffer records;
+
+	/**
+	 * @param records
+	 *            buffer holding the records from its position to its limit
+	 */
+	public MotionProfile(String name, double timeStep, ByteBuffer records) {
+		if (timeStep <= 0.0) {
+			throw new IllegalArgumentException("Time step must be positive: " + timeStep);
+		}
+		if (records.remaining() < recordBytes || records.remaining() % recordBytes != 0) {
+			throw new IllegalArgumentException("Profile " + name + " has a partial or missing record");
+		}
+		this.name = name;
+		this.timeStep = timeStep;
+		this.records = records.slice();
+		this.sampleCount = this.records.capacity() / recordBytes;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public double getTimeStep() {
+		return timeStep;
+	}
+
+	public int getSampleCount() {
+		return sampleCount;
+	}
+
+	/**
+	 * @return the time of the last sample in seconds
+	 */
+	public double getDuration() {
+		return (sampleCount - 1) * timeStep;
+	}
+
+	public double getPosition(int index) {
+		return records.getFloat(index * recordBytes);
+	}
+
+	public double getVelocity(int index) {
+		return records.getFloat(index * recordBytes + velocityOffset);
+	}
+
+	public double getAcceleration(int index) {
+		return records.getFloat(index * recordBytes + accelerationOffset);
+	}
+
+	/**
+	 * @return the index of the last sample at or before the given time,
+	 *         clamped to the profile
+	 */
+	public int indexAt(double time) {
+		int index = (int) (time / timeStep);
+		return index < 0 ? 0 : (index >= sampleCount ? sampleCount - 1 : index);
+	}
+
+	/**
+	 * @return the position at the given time, interpolated between samples
+	 */
+	public double positionAt(double time) {
+		int index = indexAt(time);
+		if (index == sampleCount - 1) {
+			return getPosition(index);
+		}
+		double fraction = Math.min(1.0, Math.max(0.0, time / timeStep - index));
+		double position = getPosition(index);
+		return position + (getPosition(index + 1) - position) * fraction;
+	}
+
+	/**
+	 * @return the velocity at the given time, interpolated between samples
+	 */
+	public double velocityAt(double time) {
+		int index = indexAt(time);
+		if (index == sampleCount - 1) {
+			return getVelocity(index);
+		}
+		double fraction = Math.min(1.0, Math.max(0.0, time / timeStep - index));
+		double velocity = getVelocity(index);
+		return velocity + (getVelocity(index + 1) - velocity) * fraction;
+	}
+
+	/**
+	 * @return the acceleration of the sample at or before the given time
+	 */
+	public double accelerationAt(double time) {
+		return getAcceleration(indexAt(time));
+	}
+
+	/**
+	 * @return a read only view of the records, positioned at the first
+	 */
+	public ByteBuffer getRecords() {
+		return records.asReadOnlyBuffer();
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + sampleCount + " samples, " + getDuration() + " s, " + getPosition(sampleCount - 1)
+				+ " distance)";
+	}
+
+}
@@ -1,25 +1,101 @@
 package org.usfirst.frc.team4308.util;
 
+import com.ctre.CANTalon;
+import com.ctre.CANTalon.TalonControlMode;
+
 import edu.wpi.first.wpilibj.SpeedController;
 
-public class MultiSpeedController implements SpeedController {
+/**
+ * Drives a group of speed controllers together. When every member is a
+ * {@link CANTalon}, the first is the master and the rest are put in hardware
+ * follower mode, so only the master is sent an output. Groups with other
+ * controllers fall back to setting each member in software.
+ * <p>
+ * Commanded controllers are wrapped in a {@link CoalescingSpeedController},
+ * so an unchanged output is not resent every cycle. Each member can be
+ * inverted on its own, and inversion changes take effect immediately. The
+ * wrappers are named after the group, so groups logged side by side need
+ * their own names.
+ */
+public class MultiSpeedController implements SpeedController, Loggable {
 
 	private static final double restingSpeed = 0.0;
 
-	private final SpeedController[] controllers;
+	public static final String defaultName = "Speed Controller";
+
+	private final String name;
+	private final SpeedController[] members;
+	private final boolean[] memberInverted;
+	private final CoalescingSpeedController[] controllers;
+	private final boolean following;
 	private double speed;
 	private boolean isInverted;
 
 	public MultiSpeedController(SpeedController... controllers) {
-		this(false, controllers);
+		this(defaultName, false, controllers);
 	}
 
 	public MultiSpeedController(boolean isInverted, SpeedController... controllers) {
+		this(defaultName, isInverted, controllers);
+	}
+
+	/**
+	 * @param name
+	 *            prefix of the members' telemetry keys, unique to this group
+	 */
+	public MultiSpeedController(String name, SpeedController... controllers) {
+		this(name, false, controllers);
+	}
+
+	public MultiSpeedController(String name, boolean isInverted, SpeedController... controllers) {
+		if (controllers.length == 0) {
+			throw new IllegalArgumentException("A group needs at least one controller");
+		}
+		this.name = name;
 		this.isInverted = isInverted;
-		this.controllers = controllers;
+		this.members = controllers.clone();
+		this.memberInverted = new boolean[controllers.length];
+		this.following = controllers.length > 1 && allTalons(controllers);
+		if (following) {
+			this.controllers = new CoalescingSpeedController[] {
+					new CoalescingSpeedController(name + " 0", controllers[0]) };
+			int masterId = ((CANTalon) controllers[0]).getDeviceID();
+			for (int i = 1; i < controllers.length; i++) {
+				CANTalon follower = (CANTalon) controllers[i];
+				follower.changeControlMode(TalonControlMode.Follower);
+				follower.set(masterId);
+			}
+		} else {
+			this.controllers = new CoalescingSpeedController[controllers.length];
+			for (int i = 0; i < controllers.length; i++) {
+				this.controllers[i] = new CoalescingSpeedController(name + " " + i, controllers[i]);
+			}
+		}
+		applyInversion();
 		this.set(restingSpeed);
 	}
 
+	private static boolean allTalons(SpeedController[] controllers) {
+		for (SpeedController controller : controllers) {
+			if (!(controller instanceof CANTalon)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Followers copy the master's output, so each one is reversed in hardware
+	 * when its direction differs from the master's.
+	 */
+	private void applyInversion() {
+		if (following) {
+			for (int i = 1; i < members.length; i++) {
+				((CANTalon) members[i]).reverseOutput(memberInverted[i] != memberInverted[0]);
+			}
+		}
+	}
+
 	@Override
 	public void pidWrite(double output) {
 		this.set(output);
@@ -33,19 +109,54 @@ public class MultiSpeedController implements SpeedController {
 
 	@Override
 	public void set(double speed) {
+		this.speed = speed;
 		double newSpeed = speed;
 		if (isInverted)
 			newSpeed = -speed;
-		this.speed = newSpeed;
-		for (SpeedController controller : controllers) {
-			controller.set(newSpeed);
+		for (int i = 0; i < controllers.length; i++) {
+			controllers[i].set(memberInverted[i] ? -newSpeed : newSpeed);
 		}
 
 	}
 
+	/**
+	 * @return true if the members after the first follow it in hardware
+	 */
+	public boolean isFollowing() {
+		return following;
+	}
+
+	/**
+	 * @return the wrapper around a commanded member of the group, for its
+	 *         frame counts and coalescing settings. When following, only the
+	 *         master at index 0 is commanded.
+	 */
+	public CoalescingSpeedController getController(int index) {
+		return controllers[index];
+	}
+
+	public int size() {
+		return members.length;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Publishes the frame counts of each commanded member.
+	 */
+	@Override
+	public void log() {
+		for (CoalescingSpeedController controller : controllers) {
+			controller.log();
+		}
+	}
+
 	@Override
 	public void setInverted(boolean isInverted) {
 		this.isInverted = isInverted;
+		set(speed);
 	}
 
 	@Override
@@ -53,9 +164,23 @@ public class MultiSpeedController implements SpeedController {
 		return this.isInverted;
 	}
 
+	/**
+	 * Reverses one member relative to the rest of the group, such as a motor
+	 * mounted facing the other way on a shared gearbox.
+	 */
+	public void setInverted(int index, boolean isInverted) {
+		memberInverted[index] = isInverted;
+		applyInversion();
+		set(speed);
+	}
+
+	public boolean getInverted(int index) {
+		return memberInverted[index];
+	}
+
 	@Override
 	public void disable() {
-		for (SpeedController controller : controllers) {
+		for (CoalescingSpeedController controller : controllers) {
 			controller.disable();
 		}
 
@@ -63,7 +188,7 @@ public class MultiSpeedController implements SpeedController {
 
 	@Override
 	public void stopMotor() {
-		for (SpeedController controller : controllers) {
+		for (CoalescingSpeedController controller : controllers) {
 			controller.stopMotor();
 		}
 		this.speed = (restingSpeed);
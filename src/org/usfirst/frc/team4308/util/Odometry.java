@@ -0,0 +1,368 @@
+package org.usfirst.frc.team4308.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.Encoder;
+import edu.wpi.first.wpilibj.interfaces.Gyro;
+
+/**
+ * Tracks the pose of a differential drive robot from its two drive encoders,
+ * and a gyro if one is given. Each {@link #loop()} integrates the motion since
+ * the last sample along an exact circular arc, so the pose stays accurate when
+ * the loop runs at a high rate on its own {@link FixedRateLooper}. Sensors can
+ * also be given as suppliers, such as those of a simulated drivetrain.
+ * <p>
+ * The pose is published through a sequence lock, so any thread can read a
+ * consistent snapshot with {@link #getPose(Pose)} without blocking the loop
+ * and without allocating. The pose starts at the origin facing along the x
+ * axis.
+ * <p>
+ * The most recent {@link #historySize} poses are also kept in a
+ * {@link Vector3Buffer} of x, y and heading, so a measurement taken a moment
+ * ago, such as a vision target, can be matched with
+ * {@link #getPoseAt(long, Pose)} to where the robot was when it was taken.
+ * The history is guarded by a lock held only to write or search one entry.
+ */
+public class Odometry implements Loop, Loggable {
+
+	private static final int sequenceIndex = 0;
+	private static final int xIndex = 1;
+	private static final int yIndex = 2;
+	private static final int headingIndex = 3;
+	private static final int timestampIndex = 4;
+
+	/**
+	 * Below this change in heading, the arc is treated as a straight line.
+	 */
+	private static final double straightThreshold = 1e-9;
+
+	/**
+	 * Poses kept in the history, a second's worth at 500 Hz.
+	 */
+	public static final int historySize = 500;
+
+	private final String name;
+	private final DoubleSupplier left;
+	private final DoubleSupplier right;
+	private final DoubleSupplier heading;
+	private final double trackWidth;
+	private final Clock clock;
+
+	private final AtomicLongArray published = new AtomicLongArray(5);
+
+	// A ring over the buffer, oldest first from historyStart once full.
+	private final Vector3Buffer history = new Vector3Buffer(historySize);
+	private final long[] historyTimes = new long[historySize];
+	private int historyStart;
+
+	// Only touched by the loop thread.
+	private double x;
+	private double y;
+	private double currentHeading;
+	private double lastLeft;
+	private double lastRight;
+	private double lastGyro;
+	private long sequence;
+
+	private volatile boolean resetRequested;
+	private volatile double resetX;
+	private volatile double resetY;
+	private volatile double resetHeading;
+
+	private final Pose logged = new Pose();
+	private final Telemetry.NumberHandle xTelemetry;
+	private final Telemetry.NumberHandle yTelemetry;
+	private final Telemetry.NumberHandle headingTelemetry;
+
+	/**
+	 * @param left
+	 *            encoder on the left side, counting up when driving forwards
+	 * @param right
+	 *            encoder on the right side, counting up when driving forwards
+	 * @param gyro
+	 *            gyro measuring the heading, or null to take the heading from
+	 *            the difference between the encoders
+	 * @param trackWidth
+	 *            distance between the left and right wheels, in the units of
+	 *            the encoder distances
+	 */
+	public Odometry(String name, Encoder left, Encoder right, Gyro gyro, double trackWidth) {
+		this(name, left, right, gyro, trackWidth, Clock.system);
+	}
+
+	public Odometry(String name, Encoder left, Encoder right, Gyro gyro, double trackWidth, Clock clock) {
+		// WPILib gyros measure clockwise degrees.
+		this(name, distance(left), distance(right), gyro == null ? null : () -> -Math.toRadians(gyro.getAngle()),
+				trackWidth, clock);
+	}
+
+	/**
+	 * @param left
+	 *            distance travelled by the left side, increasing forwards
+	 * @param right
+	 *            distance travelled by the right side, increasing forwards
+	 * @param heading
+	 *            counterclockwise heading in radians, or null to take the
+	 *            heading from the difference between the distances
+	 */
+	public Odometry(String name, DoubleSupplier left, DoubleSupplier right, DoubleSupplier heading, double trackWidth,
+			Clock clock) {
+		if (left == null || right == null) {
+			throw new IllegalArgumentException("Both drive encoders are required");
+		}
+		if (trackWidth <= 0.0) {
+			throw new IllegalArgumentException("Track width must be positive: " + trackWidth);
+		}
+		this.name = name;
+		this.left = left;
+		this.right = right;
+		this.heading = heading;
+		this.trackWidth = trackWidth;
+		this.clock = clock;
+		Telemetry telemetry = Telemetry.getInstance();
+		xTelemetry = telemetry.addNumber(name + " X");
+		yTelemetry = telemetry.addNumber(name + " Y");
+		headingTelemetry = telemetry.addNumber(name + " Heading");
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	private static DoubleSupplier distance(Encoder encoder) {
+		if (encoder == null) {
+			throw new IllegalArgumentException("Both drive encoders are required");
+		}
+		return encoder::getDistance;
+	}
+
+	@Override
+	public void start() {
+		lastLeft = left.getAsDouble();
+		lastRight = right.getAsDouble();
+		if (heading != null) {
+			lastGyro = heading.getAsDouble();
+		}
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	@Override
+	public void loop() {
+		double leftDistance = left.getAsDouble();
+		double rightDistance = right.getAsDouble();
+		double deltaLeft = leftDistance - lastLeft;
+		double deltaRight = rightDistance - lastRight;
+		lastLeft = leftDistance;
+		lastRight = rightDistance;
+
+		double deltaHeading;
+		if (heading != null) {
+			double gyroHeading = heading.getAsDouble();
+			// Gyros that report a wrapped heading jump by a full turn when it
+			// crosses the seam, which is no rotation at all.
+			deltaHeading = DriveKinematics.wrap(gyroHeading - lastGyro);
+			lastGyro = gyroHeading;
+		} else {
+			deltaHeading = (deltaRight - deltaLeft) / trackWidth;
+		}
+
+		if (resetRequested) {
+			resetRequested = false;
+			x = resetX;
+			y = resetY;
+			currentHeading = resetHeading;
+			clearHistory();
+		}
+
+		double distance = 0.5 * (deltaLeft + deltaRight);
+		double sin = Math.sin(currentHeading);
+		double cos = Math.cos(currentHeading);
+		if (Math.abs(deltaHeading) < straightThreshold) {
+			x += distance * cos;
+			y += distance * sin;
+		} else {
+			// Exact integration along an arc of constant curvature.
+			double newHeading = currentHeading + deltaHeading;
+			double radius = distance / deltaHeading;
+			x += radius * (Math.sin(newHeading) - sin);
+			y += radius * (cos - Math.cos(newHeading));
+		}
+		currentHeading = DriveKinematics.wrap(currentHeading + deltaHeading);
+
+		long now = clock.nanoTime();
+		publish(now);
+		record(now);
+	}
+
+	/**
+	 * Writes the pose under an odd sequence number and then makes it even
+	 * again, so readers can tell when they overlapped a write.
+	 */
+	private void publish(long timestamp) {
+		published.set(sequenceIndex, ++sequence);
+		published.set(xIndex, Double.doubleToRawLongBits(x));
+		published.set(yIndex, Double.doubleToRawLongBits(y));
+		published.set(headingIndex, Double.doubleToRawLongBits(currentHeading));
+		published.set(timestampIndex, timestamp);
+		published.set(sequenceIndex, ++sequence);
+	}
+
+	private void record(long timestamp) {
+		synchronized (history) {
+			if (history.size() < historySize) {
+				historyTimes[history.size()] = timestamp;
+				history.add(x, y, currentHeading);
+			} else {
+				historyTimes[historyStart] = timestamp;
+				history.set(historyStart, x, y, currentHeading);
+				historyStart = (historyStart + 1) % historySize;
+			}
+		}
+	}
+
+	private void clearHistory() {
+		synchronized (history) {
+			history.clear();
+			historyStart = 0;
+		}
+	}
+
+	/**
+	 * @return the slot of the i-th oldest pose in the history
+	 */
+	private int slot(int i) {
+		int index = historyStart + i;
+		return index < historySize ? index : index - historySize;
+	}
+
+	/**
+	 * Copies the pose at a recent time into the destination, interpolated
+	 * between the poses either side of it. Times after the latest pose give
+	 * the latest pose. Safe to call from any thread.
+	 *
+	 * @param timestamp
+	 *            {@link Clock#nanoTime()} of the moment
+	 * @return the destination, or null if the time is older than the history
+	 */
+	public Pose getPoseAt(long timestamp, Pose out) {
+		synchronized (history) {
+			int size = history.size();
+			if (size == 0 || timestamp - historyTimes[slot(0)] < 0) {
+				return null;
+			}
+			int newest = slot(size - 1);
+			if (timestamp - historyTimes[newest] >= 0) {
+				return out.set(history.getX(newest), history.getY(newest), history.getZ(newest),
+						historyTimes[newest]);
+			}
+			// The latest pose at or before the time, by binary search.
+			int low = 0;
+			int high = size - 1;
+			while (high - low > 1) {
+				int middle = (low + high) >>> 1;
+				if (timestamp - historyTimes[slot(middle)] >= 0) {
+					low = middle;
+				} else {
+					high = middle;
+				}
+			}
+			int before = slot(low);
+			int after = slot(high);
+			double t = (double) (timestamp - historyTimes[before]) / (historyTimes[after] - historyTimes[before]);
+			double heading = history.getZ(before)
+					+ t * DriveKinematics.wrap(history.getZ(after) - history.getZ(before));
+			return out.set(history.getX(before) + t * (history.getX(after) - history.getX(before)),
+					history.getY(before) + t * (history.getY(after) - history.getY(before)),
+					DriveKinematics.wrap(heading), timestamp);
+		}
+	}
+
+	/**
+	 * Copies the history, oldest first, for bulk processing such as finding
+	 * the pose nearest a point with {@link Vector3Buffer#nearestXY}.
+	 *
+	 * @param poses
+	 *            receives x, y and heading, with capacity for
+	 *            {@link #historySize} poses
+	 * @param timestamps
+	 *            receives the {@link Clock#nanoTime()} of each pose, or null
+	 * @return the number of poses copied
+	 */
+	public int getHistory(Vector3Buffer poses, long[] timestamps) {
+		synchronized (history) {
+			int size = history.size();
+			int first = size < historySize ? 0 : historyStart;
+			int tail = Math.min(size, historySize - first);
+			poses.setSize(size);
+			copy(history.xs(), poses.xs(), first, tail, size);
+			copy(history.ys(), poses.ys(), first, tail, size);
+			copy(history.zs(), poses.zs(), first, tail, size);
+			if (timestamps != null) {
+				System.arraycopy(historyTimes, first, timestamps, 0, tail);
+				System.arraycopy(historyTimes, 0, timestamps, tail, size - tail);
+			}
+			return size;
+		}
+	}
+
+	private static void copy(double[] source, double[] destination, int first, int tail, int size) {
+		System.arraycopy(source, first, destination, 0, tail);
+		System.arraycopy(source, 0, destination, tail, size - tail);
+	}
+
+	/**
+	 * Copies the latest pose into the destination. Safe to call from any
+	 * thread; retries if the loop was publishing at the same time.
+	 */
+	public Pose getPose(Pose out) {
+		while (true) {
+			long before = published.get(sequenceIndex);
+			if ((before & 1) == 0) {
+				double x = Double.longBitsToDouble(published.get(xIndex));
+				double y = Double.longBitsToDouble(published.get(yIndex));
+				double heading = Double.longBitsToDouble(published.get(headingIndex));
+				long timestamp = published.get(timestampIndex);
+				if (published.get(sequenceIndex) == before) {
+					return out.set(x, y, heading, timestamp);
+				}
+			}
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * @return the number of poses published since construction
+	 */
+	public long getUpdateCount() {
+		return published.get(sequenceIndex) >>> 1;
+	}
+
+	/**
+	 * Moves the tracked pose, such as to the starting position of an
+	 * autonomous routine. Takes effect on the next loop.
+	 */
+	public void reset(double x, double y, double heading) {
+		resetX = x;
+		resetY = y;
+		resetHeading = heading;
+		resetRequested = true;
+	}
+
+	public double getTrackWidth() {
+		return trackWidth;
+	}
+
+	@Override
+	public void log() {
+		getPose(logged);
+		xTelemetry.set(logged.x);
+		yTelemetry.set(logged.y);
+		headingTelemetry.set(Math.toDegrees(logged.heading));
+	}
+
+}
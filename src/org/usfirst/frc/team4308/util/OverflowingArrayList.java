@@ -5,6 +5,9 @@ import java.util.Collection;
 
 /**
  * Extension of the ArrayList object that will remove the first element(s) of the array in order to make room for new elements
+ * <p>
+ * Every eviction shifts the whole array, use {@link DoubleRingBuffer}, {@link IntRingBuffer} or {@link LongRingBuffer} for
+ * primitive sample histories.
  * 
  * @author Michael Brown
  *
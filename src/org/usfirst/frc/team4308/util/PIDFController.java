@@ -0,0 +1,254 @@
+package org.usfirst.frc.team4308.util;
+
+/**
+ * Proportional, integral, derivative and feedforward controller stepped at a
+ * fixed period by the caller, instead of running on its own thread like
+ * WPILib's PIDController. Many controllers can be stepped together from one
+ * {@link Loop}, see {@link ControllerBatch}. Updating does not allocate.
+ * <ul>
+ * <li>The integral stops accumulating while the output is saturated in the
+ * direction of the error, and its contribution can be clamped, so it cannot
+ * wind up.</li>
+ * <li>The derivative is taken on the measurement rather than the error, so
+ * setpoint changes do not kick the output, and can be low pass filtered.</li>
+ * <li>Continuous input wraps the error for angles and other inputs whose
+ * ends meet.</li>
+ * </ul>
+ */
+public class PIDFController {
+
+	/**
+	 * One cycle of the 200 Hz control loop.
+	 */
+	public static final double defaultPeriod = 0.005;
+
+	private double proportional;
+	private double integral;
+	private double derivative;
+	private double feedForward;
+	private final double period;
+
+	private double minimumOutput = -1.0;
+	private double maximumOutput = 1.0;
+	private double minimumIntegral = Double.NEGATIVE_INFINITY;
+	private double maximumIntegral = Double.POSITIVE_INFINITY;
+
+	private boolean continuous;
+	private double minimumInput;
+	private double maximumInput;
+
+	/**
+	 * Weight of the newest derivative sample, 1.0 for no filtering.
+	 */
+	private double derivativeWeight = 1.0;
+
+	private double setpoint;
+	private double error;
+	private double integralTerm;
+	private double filteredDerivative;
+	private double lastMeasurement;
+	private boolean first = true;
+	private double output;
+
+	public PIDFController(double proportional, double integral, double derivative, double feedForward) {
+		this(proportional, integral, derivative, feedForward, defaultPeriod);
+	}
+
+	/**
+	 * @param feedForward
+	 *            output per unit of setpoint
+	 * @param period
+	 *            seconds between calls to {@link #calculate(double)}
+	 */
+	public PIDFController(double proportional, double integral, double derivative, double feedForward,
+			double period) {
+		if (period <= 0.0) {
+			throw new IllegalArgumentException("Period must be positive: " + period);
+		}
+		this.proportional = proportional;
+		this.integral = integral;
+		this.derivative = derivative;
+		this.feedForward = feedForward;
+		this.period = period;
+	}
+
+	/**
+	 * Runs one step of the controller.
+	 *
+	 * @return the new output
+	 */
+	public double calculate(double measurement) {
+		return calculate(measurement, 0.0);
+	}
+
+	/**
+	 * Runs one step of the controller with an extra feedforward added to the
+	 * output, such as the output needed to hold an arm against gravity.
+	 *
+	 * @return the new output
+	 */
+	public double calculate(double measurement, double extraFeedForward) {
+		error = setpoint - measurement;
+		double rate = 0.0;
+		if (continuous) {
+			error = wrap(error);
+		}
+		if (!first) {
+			double change = measurement - lastMeasurement;
+			if (continuous) {
+				change = wrap(change);
+			}
+			rate = change / period;
+		}
+		lastMeasurement = measurement;
+		first = false;
+		filteredDerivative += derivativeWeight * (rate - filteredDerivative);
+
+		double unsaturated = proportional * error + integralTerm - derivative * filteredDerivative
+				+ feedForward * setpoint + extraFeedForward;
+
+		// Only integrate when it would not push a saturated output further.
+		double step = integral * error * period;
+		if (!(unsaturated >= maximumOutput && step > 0.0) && !(unsaturated <= minimumOutput && step < 0.0)) {
+			integralTerm = clamp(integralTerm + step, minimumIntegral, maximumIntegral);
+		}
+
+		output = clamp(proportional * error + integralTerm - derivative * filteredDerivative + feedForward * setpoint
+				+ extraFeedForward, minimumOutput, maximumOutput);
+		return output;
+	}
+
+	private double wrap(double value) {
+		double range = maximumInput - minimumInput;
+		double half = 0.5 * range;
+		if (value > half || value <= -half) {
+			value -= range * Math.floor((value + half) / range);
+		}
+		return value;
+	}
+
+	private static double clamp(double value, double minimum, double maximum) {
+		return value > maximum ? maximum : (value < minimum ? minimum : value);
+	}
+
+	/**
+	 * Clears the integral and derivative history, for when the controller has
+	 * not been stepped for a while.
+	 */
+	public void reset() {
+		integralTerm = 0.0;
+		filteredDerivative = 0.0;
+		first = true;
+		error = 0.0;
+		output = 0.0;
+	}
+
+	public void setSetpoint(double setpoint) {
+		this.setpoint = setpoint;
+	}
+
+	public double getSetpoint() {
+		return setpoint;
+	}
+
+	/**
+	 * @return the error at the last step
+	 */
+	public double getError() {
+		return error;
+	}
+
+	/**
+	 * @return the output of the last step
+	 */
+	public double getOutput() {
+		return output;
+	}
+
+	/**
+	 * @return true if the error at the last step was within the tolerance
+	 */
+	public boolean onTarget(double tolerance) {
+		return !first && Math.abs(error) <= tolerance;
+	}
+
+	public void setGains(double proportional, double integral, double derivative, double feedForward) {
+		this.proportional = proportional;
+		this.integral = integral;
+		this.derivative = derivative;
+		this.feedForward = feedForward;
+	}
+
+	public void setProportional(double proportional) {
+		this.proportional = proportional;
+	}
+
+	public double getProportional() {
+		return proportional;
+	}
+
+	public double getIntegral() {
+		return integral;
+	}
+
+	public double getDerivative() {
+		return derivative;
+	}
+
+	public double getFeedForward() {
+		return feedForward;
+	}
+
+	public double getPeriod() {
+		return period;
+	}
+
+	public void setOutputRange(double minimum, double maximum) {
+		if (minimum > maximum) {
+			throw new IllegalArgumentException("Minimum output is greater than maximum");
+		}
+		minimumOutput = minimum;
+		maximumOutput = maximum;
+	}
+
+	/**
+	 * Limits the contribution of the integral term to the output.
+	 */
+	public void setIntegralRange(double minimum, double maximum) {
+		if (minimum > maximum) {
+			throw new IllegalArgumentException("Minimum integral is greater than maximum");
+		}
+		minimumIntegral = minimum;
+		maximumIntegral = maximum;
+		integralTerm = clamp(integralTerm, minimum, maximum);
+	}
+
+	/**
+	 * Treats the input as wrapping around between the two values, so the
+	 * controller takes the shorter way around.
+	 */
+	public void setContinuous(double minimumInput, double maximumInput) {
+		if (minimumInput >= maximumInput) {
+			throw new IllegalArgumentException("Minimum input must be less than maximum");
+		}
+		this.minimumInput = minimumInput;
+		this.maximumInput = maximumInput;
+		continuous = true;
+	}
+
+	public void disableContinuous() {
+		continuous = false;
+	}
+
+	/**
+	 * Low pass filters the derivative with the given time constant in
+	 * seconds, or disables the filter if zero.
+	 */
+	public void setDerivativeFilter(double timeConstant) {
+		if (timeConstant < 0.0) {
+			throw new IllegalArgumentException("Time constant cannot be negative: " + timeConstant);
+		}
+		derivativeWeight = period / (timeConstant + period);
+	}
+
+}
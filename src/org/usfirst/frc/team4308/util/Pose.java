@@ -0,0 +1,63 @@
+package org.usfirst.frc.team4308.util;
+
+/**
+ * Position and heading of the robot on the field at a moment in time. Like
+ * {@link Vector2}, the fields are public and mutable so a pose can be reused
+ * as the destination of a read every cycle.
+ */
+public final class Pose {
+
+	public double x;
+	public double y;
+
+	/**
+	 * Counterclockwise heading in radians.
+	 */
+	public double heading;
+
+	/**
+	 * {@link Clock#nanoTime()} of the sample the pose was computed from.
+	 */
+	public long timestamp;
+
+	public Pose() {
+	}
+
+	public Pose(double x, double y, double heading) {
+		this.x = x;
+		this.y = y;
+		this.heading = heading;
+	}
+
+	public Pose set(double x, double y, double heading, long timestamp) {
+		this.x = x;
+		this.y = y;
+		this.heading = heading;
+		this.timestamp = timestamp;
+		return this;
+	}
+
+	public Pose set(Pose other) {
+		return set(other.x, other.y, other.heading, other.timestamp);
+	}
+
+	public Vector2 getPosition(Vector2 out) {
+		return out.set(x, y);
+	}
+
+	public double distance(Pose other) {
+		double dx = x - other.x;
+		double dy = y - other.y;
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	public Pose copy() {
+		return new Pose().set(this);
+	}
+
+	@Override
+	public String toString() {
+		return "(" + x + ", " + y + ", " + Math.toDegrees(heading) + " deg)";
+	}
+
+}
@@ -0,0 +1,480 @@
+package org.usfirst.frc.team4308.util;
+
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Keeps the robot out of brownout by shedding load before the battery sags
+ * too far. Each {@link #loop()} adds up the current of every registered
+ * {@link Powered} consumer and estimates the battery's internal resistance by
+ * a least squares fit of voltage against current over the recent samples. The
+ * resistance, together with the trend of the current, predicts the voltage a
+ * moment ahead.
+ * <p>
+ * When the predicted voltage falls below the shed voltage, or the average
+ * current over the window nears the rating of the main breaker, which trips on
+ * sustained rather than momentary draw, loads are shed in the order they were
+ * added: each load's scale ramps from 1 down to its minimum before the next
+ * load is touched. Loads are restored in reverse order, more slowly, once the
+ * prediction recovers above the restore voltage. A load is either told its
+ * scale on the manager's thread, or reads the published scale on the thread
+ * that drives it.
+ * <p>
+ * While any consumer's readings are {@link Powered#isStale() stale}, the
+ * manager skips the sample, leaving the fit and the shed level as they were,
+ * so a missed sensor read is not mistaken for a change in load.
+ */
+public class PowerManager implements Loop {
+
+	public static final int defaultWindowSize = 100;
+	public static final double defaultResistance = 0.015;
+	public static final double defaultHorizon = 0.1;
+
+	/**
+	 * Loads shed per second while the battery is in danger, and restored per
+	 * second once it recovers.
+	 */
+	public static final double defaultShedRate = 5.0;
+	public static final double defaultRestoreRate = 0.5;
+
+	/**
+	 * Resistances outside this range are measurement noise, not the battery.
+	 */
+	private static final double minimumResistance = 0.005;
+	private static final double maximumResistance = 0.1;
+
+	/**
+	 * Current variance, in amps squared, the window needs before the fit is
+	 * trusted.
+	 */
+	private static final double minimumCurrentVariance = 25.0;
+
+	/**
+	 * Time constant of the current trend filter, in seconds.
+	 */
+	private static final double trendTimeConstant = 0.05;
+
+	private static final class Load {
+		private final String name;
+		private final DoubleConsumer scale;
+		private final double minimumScale;
+		private volatile double applied = 1.0;
+
+		private Load(String name, DoubleConsumer scale, double minimumScale) {
+			this.name = name;
+			this.scale = scale;
+			this.minimumScale = minimumScale;
+		}
+	}
+
+	private final String name;
+	private final DoubleSupplier batteryVoltage;
+	private final Clock clock;
+
+	private volatile Powered[] consumers = new Powered[0];
+	private volatile Load[] loads = new Load[0];
+
+	private double shedVoltage;
+	private double restoreVoltage;
+	private double shedCurrent;
+	private double restoreCurrent;
+	private double horizon = defaultHorizon;
+	private double shedRate = defaultShedRate;
+	private double restoreRate = defaultRestoreRate;
+
+	// Least squares fit of voltage against current over the window.
+	private final DoubleRingBuffer currents;
+	private final DoubleRingBuffer voltages;
+	private double sumCurrent;
+	private double sumVoltage;
+	private double sumCurrentSquared;
+	private double sumProduct;
+	private int sinceRecompute;
+
+	// Only touched by the loop thread.
+	private long lastTime;
+	private double lastCurrent;
+	private double currentTrend;
+
+	private volatile double current;
+	private volatile double averageCurrent;
+	private volatile double voltage;
+	private volatile double resistance = defaultResistance;
+	private volatile double openCircuitVoltage;
+	private volatile double predictedVoltage;
+	private volatile double predictedCurrent;
+	private volatile double shedLevel;
+	private volatile long shedCount;
+	private volatile long staleCount;
+
+	private final Telemetry.NumberHandle currentTelemetry;
+	private final Telemetry.NumberHandle voltageTelemetry;
+	private final Telemetry.NumberHandle predictedTelemetry;
+	private final Telemetry.NumberHandle resistanceTelemetry;
+	private final Telemetry.NumberHandle shedTelemetry;
+
+	/**
+	 * @param batteryVoltage
+	 *            measured battery voltage, such as from the PDP or driver
+	 *            station
+	 * @param shedVoltage
+	 *            predicted voltage below which loads are shed
+	 * @param restoreVoltage
+	 *            predicted voltage above which loads are restored
+	 * @param breakerLimit
+	 *            rating of the main breaker, in amps
+	 * @param shedFraction
+	 *            fraction of the breaker rating at which loads are shed
+	 * @param restoreFraction
+	 *            fraction of the breaker rating below which loads are
+	 *            restored
+	 */
+	public PowerManager(String name, DoubleSupplier batteryVoltage, double shedVoltage, double restoreVoltage,
+			double breakerLimit, double shedFraction, double restoreFraction) {
+		this(name, batteryVoltage, shedVoltage, restoreVoltage, breakerLimit, shedFraction, restoreFraction,
+				defaultWindowSize, Clock.system);
+	}
+
+	public PowerManager(String name, DoubleSupplier batteryVoltage, double shedVoltage, double restoreVoltage,
+			double breakerLimit, double shedFraction, double restoreFraction, int windowSize, Clock clock) {
+		if (restoreVoltage < shedVoltage) {
+			throw new IllegalArgumentException("Loads must be restored above the voltage they are shed at");
+		}
+		if (restoreFraction > shedFraction) {
+			throw new IllegalArgumentException("Loads must be restored below the current they are shed at");
+		}
+		this.name = name;
+		this.batteryVoltage = batteryVoltage;
+		this.shedVoltage = shedVoltage;
+		this.restoreVoltage = restoreVoltage;
+		this.shedCurrent = shedFraction * breakerLimit;
+		this.restoreCurrent = restoreFraction * breakerLimit;
+		this.clock = clock;
+		currents = new DoubleRingBuffer(windowSize);
+		voltages = new DoubleRingBuffer(windowSize);
+
+		Telemetry telemetry = Telemetry.getInstance();
+		currentTelemetry = telemetry.addNumber(name + " Current");
+		voltageTelemetry = telemetry.addNumber(name + " Voltage");
+		predictedTelemetry = telemetry.addNumber(name + " Predicted Voltage");
+		resistanceTelemetry = telemetry.addNumber(name + " Resistance (mOhm)");
+		shedTelemetry = telemetry.addNumber(name + " Shed Level");
+	}
+
+	/**
+	 * Adds a subsystem whose current is drawn from the battery.
+	 */
+	public synchronized void addConsumer(Powered consumer) {
+		Powered[] current = consumers;
+		Powered[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = consumer;
+		consumers = updated;
+	}
+
+	/**
+	 * Adds a load that can be shed, after every load added before it.
+	 *
+	 * @param scale
+	 *            receives the fraction of full power the load may use, only
+	 *            when it changes, on the manager's thread
+	 * @param minimumScale
+	 *            the least the load is scaled to, 0 to turn it off
+	 */
+	public void addLoad(String name, DoubleConsumer scale, double minimumScale) {
+		if (scale == null) {
+			throw new IllegalArgumentException("Load " + name + " has no scale consumer");
+		}
+		add(name, scale, minimumScale);
+	}
+
+	/**
+	 * Adds a load that can be shed, after every load added before it, for a
+	 * load driven by another thread, which should apply the scale itself
+	 * each loop rather than be written to from the manager's thread.
+	 *
+	 * @param minimumScale
+	 *            the least the load is scaled to, 0 to turn it off
+	 * @return the fraction of full power the load may use. Reading it never
+	 *         blocks or allocates.
+	 */
+	public DoubleSupplier addLoad(String name, double minimumScale) {
+		Load load = add(name, null, minimumScale);
+		return () -> load.applied;
+	}
+
+	private synchronized Load add(String name, DoubleConsumer scale, double minimumScale) {
+		if (minimumScale < 0.0 || minimumScale > 1.0) {
+			throw new IllegalArgumentException("Minimum scale must be between 0 and 1: " + minimumScale);
+		}
+		Load load = new Load(name, scale, minimumScale);
+		Load[] current = loads;
+		Load[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = load;
+		loads = updated;
+		return load;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void start() {
+		lastTime = clock.nanoTime();
+		// Seeded by the first loop's sample, since the consumers' readings
+		// may not have been taken yet.
+		lastCurrent = Double.NaN;
+		currentTrend = 0.0;
+	}
+
+	/**
+	 * Restores every load, so nothing stays shed while the manager is not
+	 * running.
+	 */
+	@Override
+	public void stop() {
+		shedLevel = 0.0;
+		applyLoads();
+	}
+
+	@Override
+	public void loop() {
+		long now = clock.nanoTime();
+		double dt = (now - lastTime) / 1e9;
+		lastTime = now;
+
+		if (anyStale()) {
+			// The trend restarts from the next fresh sample rather than
+			// differencing across the gap.
+			lastCurrent = Double.NaN;
+			staleCount++;
+			return;
+		}
+		double total = totalCurrent();
+		double measured = batteryVoltage.getAsDouble();
+		current = total;
+		voltage = measured;
+		fit(total, measured);
+
+		if (dt > 0.0 && !Double.isNaN(lastCurrent)) {
+			double alpha = dt / (trendTimeConstant + dt);
+			currentTrend += alpha * ((total - lastCurrent) / dt - currentTrend);
+		}
+		lastCurrent = total;
+
+		// Only a rising current is extrapolated, so loads are not restored
+		// early on a brief dip.
+		double expected = total + Math.max(0.0, currentTrend) * horizon;
+		double predicted = openCircuitVoltage - resistance * expected;
+		predictedCurrent = expected;
+		predictedVoltage = predicted;
+
+		double level = shedLevel;
+		double average = averageCurrent;
+		if (predicted < shedVoltage || average > shedCurrent) {
+			if (level == 0.0) {
+				shedCount++;
+			}
+			level += shedRate * dt;
+		} else if (predicted > restoreVoltage && average < restoreCurrent) {
+			level -= restoreRate * dt;
+		}
+		shedLevel = Math.max(0.0, Math.min(loads.length, level));
+		applyLoads();
+
+		currentTelemetry.set(total);
+		voltageTelemetry.set(measured);
+		predictedTelemetry.set(predicted);
+		resistanceTelemetry.set(resistance * 1000.0);
+		shedTelemetry.set(shedLevel);
+	}
+
+	private double totalCurrent() {
+		Powered[] current = consumers;
+		double total = 0.0;
+		for (int i = 0; i < current.length; i++) {
+			total += current[i].current();
+		}
+		return total;
+	}
+
+	private boolean anyStale() {
+		Powered[] current = consumers;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].isStale()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a sample to the window and refits the battery, V = Voc - R * I.
+	 */
+	private void fit(double current, double voltage) {
+		if (currents.isFull()) {
+			double oldCurrent = currents.first();
+			double oldVoltage = voltages.first();
+			sumCurrent -= oldCurrent;
+			sumVoltage -= oldVoltage;
+			sumCurrentSquared -= oldCurrent * oldCurrent;
+			sumProduct -= oldCurrent * oldVoltage;
+		}
+		currents.add(current);
+		voltages.add(voltage);
+		sumCurrent += current;
+		sumVoltage += voltage;
+		sumCurrentSquared += current * current;
+		sumProduct += current * voltage;
+		if (++sinceRecompute >= currents.capacity()) {
+			recompute();
+		}
+
+		int n = currents.size();
+		double meanCurrent = sumCurrent / n;
+		double meanVoltage = sumVoltage / n;
+		double variance = sumCurrentSquared / n - meanCurrent * meanCurrent;
+		if (variance > minimumCurrentVariance) {
+			double covariance = sumProduct / n - meanCurrent * meanVoltage;
+			double fitted = -covariance / variance;
+			if (fitted >= minimumResistance && fitted <= maximumResistance) {
+				resistance = fitted;
+			}
+		}
+		averageCurrent = meanCurrent;
+		openCircuitVoltage = meanVoltage + resistance * meanCurrent;
+	}
+
+	/**
+	 * Recomputes the sums exactly, so rounding errors do not build up.
+	 */
+	private void recompute() {
+		sumCurrent = 0.0;
+		sumVoltage = 0.0;
+		sumCurrentSquared = 0.0;
+		sumProduct = 0.0;
+		for (int i = 0; i < currents.size(); i++) {
+			double current = currents.get(i);
+			double voltage = voltages.get(i);
+			sumCurrent += current;
+			sumVoltage += voltage;
+			sumCurrentSquared += current * current;
+			sumProduct += current * voltage;
+		}
+		sinceRecompute = 0;
+	}
+
+	private void applyLoads() {
+		Load[] current = loads;
+		double level = shedLevel;
+		for (int i = 0; i < current.length; i++) {
+			Load load = current[i];
+			double shed = Math.max(0.0, Math.min(1.0, level - i));
+			double scale = 1.0 - shed * (1.0 - load.minimumScale);
+			if (scale != load.applied) {
+				load.applied = scale;
+				if (load.scale != null) {
+					load.scale.accept(scale);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param seconds
+	 *            how far ahead the current trend is extrapolated
+	 */
+	public void setHorizon(double seconds) {
+		horizon = seconds;
+	}
+
+	/**
+	 * @param shedRate
+	 *            loads shed per second while the battery is in danger
+	 * @param restoreRate
+	 *            loads restored per second once it recovers
+	 */
+	public void setRates(double shedRate, double restoreRate) {
+		this.shedRate = shedRate;
+		this.restoreRate = restoreRate;
+	}
+
+	/**
+	 * @return the total current of the consumers at the last loop, in amps
+	 */
+	public double getCurrent() {
+		return current;
+	}
+
+	/**
+	 * @return the average total current over the window, in amps
+	 */
+	public double getAverageCurrent() {
+		return averageCurrent;
+	}
+
+	public double getVoltage() {
+		return voltage;
+	}
+
+	/**
+	 * @return the estimated internal resistance of the battery and wiring,
+	 *         in ohms
+	 */
+	public double getResistance() {
+		return resistance;
+	}
+
+	/**
+	 * @return the estimated voltage of the battery with no load
+	 */
+	public double getOpenCircuitVoltage() {
+		return openCircuitVoltage;
+	}
+
+	public double getPredictedVoltage() {
+		return predictedVoltage;
+	}
+
+	public double getPredictedCurrent() {
+		return predictedCurrent;
+	}
+
+	/**
+	 * @return how many loads are shed, fractional while a load is scaled
+	 */
+	public double getShedLevel() {
+		return shedLevel;
+	}
+
+	/**
+	 * @return the number of times shedding has started
+	 */
+	public long getShedCount() {
+		return shedCount;
+	}
+
+	/**
+	 * @return the number of loops skipped because a consumer was stale
+	 */
+	public long getStaleCount() {
+		return staleCount;
+	}
+
+	/**
+	 * @return the scale last given to the named load, or 1 if there is no
+	 *         such load
+	 */
+	public double getScale(String load) {
+		Load[] current = loads;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].name.equals(load)) {
+				return current[i].applied;
+			}
+		}
+		return 1.0;
+	}
+
+}
@@ -19,4 +19,12 @@ public interface Powered {
 		return voltage() * current();
 	}
 
+	/**
+	 * @return true if the readings are too old to act on, such as when they
+	 *         come from a cached sensor that has not been sampled lately
+	 */
+	public default boolean isStale() {
+		return false;
+	}
+
 }
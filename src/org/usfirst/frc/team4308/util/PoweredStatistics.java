@@ -0,0 +1,87 @@
+package org.usfirst.frc.team4308.util;
+
+/**
+ * Loop that samples the voltage, current and temperature of a {@link Powered}
+ * subsystem every time it runs and keeps {@link RollingStatistics} over the
+ * most recent samples of each, skipping samples while the source is
+ * {@link Powered#isStale() stale}. The statistics are published to
+ * {@link Telemetry} from the loop, since they are only safe to read on the
+ * loop's thread.
+ */
+public class PoweredStatistics implements Loop {
+
+	private final String name;
+	private final Powered source;
+	private final RollingStatistics voltage;
+	private final RollingStatistics current;
+	private final RollingStatistics temperature;
+
+	private final Telemetry.NumberHandle meanCurrentTelemetry;
+	private final Telemetry.NumberHandle maxCurrentTelemetry;
+	private final Telemetry.NumberHandle meanVoltageTelemetry;
+	private final Telemetry.NumberHandle minVoltageTelemetry;
+	private final Telemetry.NumberHandle maxTemperatureTelemetry;
+
+	public PoweredStatistics(String name, Powered source, int windowSize) {
+		this.name = name;
+		this.source = source;
+		this.voltage = new RollingStatistics(windowSize);
+		this.current = new RollingStatistics(windowSize);
+		this.temperature = new RollingStatistics(windowSize);
+
+		Telemetry telemetry = Telemetry.getInstance();
+		meanCurrentTelemetry = telemetry.addNumber(name + " Mean Current");
+		maxCurrentTelemetry = telemetry.addNumber(name + " Max Current");
+		meanVoltageTelemetry = telemetry.addNumber(name + " Mean Voltage");
+		minVoltageTelemetry = telemetry.addNumber(name + " Min Voltage");
+		maxTemperatureTelemetry = telemetry.addNumber(name + " Max Temperature");
+	}
+
+	@Override
+	public void start() {
+		voltage.clear();
+		current.clear();
+		temperature.clear();
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	@Override
+	public void loop() {
+		if (!source.isStale()) {
+			voltage.add(source.voltage());
+			current.add(source.current());
+			temperature.add(source.temperature());
+		}
+
+		meanCurrentTelemetry.set(current.getMean());
+		maxCurrentTelemetry.set(current.getMax());
+		meanVoltageTelemetry.set(voltage.getMean());
+		minVoltageTelemetry.set(voltage.getMin());
+		maxTemperatureTelemetry.set(temperature.getMax());
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	public Powered getSource() {
+		return source;
+	}
+
+	public RollingStatistics getVoltage() {
+		return voltage;
+	}
+
+	public RollingStatistics getCurrent() {
+		return current;
+	}
+
+	public RollingStatistics getTemperature() {
+		return temperature;
+	}
+
+}
@@ -0,0 +1,119 @@
+package org.usfirst.frc.team4308.util;
+
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Follows a {@link MotionProfile} by looking up the sample for the time since
+ * {@link #start()} each loop, and sending a feedforward output from its
+ * velocity and acceleration plus a proportional correction for the position
+ * error. Positions are measured relative to where the mechanism was at the
+ * start.
+ */
+public class ProfileFollower implements Loop {
+
+	private final MotionProfile profile;
+	private final DoubleSupplier position;
+	private final DoubleConsumer output;
+	private final double proportional;
+	private final double velocityFeedForward;
+	private final double accelerationFeedForward;
+	private final Clock clock;
+
+	private long startTime;
+	private double startPosition;
+	private double error;
+	private volatile boolean finished;
+	private volatile String[] writes = new String[0];
+
+	/**
+	 * @param position
+	 *            measures the position of the mechanism, in the units of the
+	 *            profile
+	 * @param output
+	 *            receives the output each loop, -1.0 to 1.0
+	 * @param velocityFeedForward
+	 *            output per unit of velocity
+	 * @param accelerationFeedForward
+	 *            output per unit of acceleration
+	 */
+	public ProfileFollower(MotionProfile profile, DoubleSupplier position, DoubleConsumer output,
+			double proportional, double velocityFeedForward, double accelerationFeedForward) {
+		this(profile, position, output, proportional, velocityFeedForward, accelerationFeedForward, Clock.system);
+	}
+
+	public ProfileFollower(MotionProfile profile, DoubleSupplier position, DoubleConsumer output,
+			double proportional, double velocityFeedForward, double accelerationFeedForward, Clock clock) {
+		this.profile = profile;
+		this.position = position;
+		this.output = output;
+		this.proportional = proportional;
+		this.velocityFeedForward = velocityFeedForward;
+		this.accelerationFeedForward = accelerationFeedForward;
+		this.clock = clock;
+	}
+
+	@Override
+	public String getName() {
+		return profile.getName();
+	}
+
+	/**
+	 * Declares the shared state the output writes, so a looper runs loops
+	 * reading it after this one. Loopers read this when the follower is
+	 * added, so set it first.
+	 */
+	public void setWrites(String... state) {
+		writes = state.clone();
+	}
+
+	@Override
+	public String[] writes() {
+		return writes.clone();
+	}
+
+	@Override
+	public void start() {
+		startTime = clock.nanoTime();
+		startPosition = position.getAsDouble();
+		error = 0.0;
+		finished = false;
+	}
+
+	@Override
+	public void stop() {
+		output.accept(0.0);
+	}
+
+	@Override
+	public void loop() {
+		double time = (clock.nanoTime() - startTime) / 1e9;
+		if (time >= profile.getDuration()) {
+			finished = true;
+		}
+		int index = profile.indexAt(time);
+		error = profile.getPosition(index) - (position.getAsDouble() - startPosition);
+		double value = velocityFeedForward * profile.getVelocity(index)
+				+ accelerationFeedForward * profile.getAcceleration(index) + proportional * error;
+		output.accept(DriveKinematics.limit(value));
+	}
+
+	/**
+	 * @return true once the end of the profile has been reached
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * @return the position error at the last loop
+	 */
+	public double getError() {
+		return error;
+	}
+
+	public MotionProfile getProfile() {
+		return profile;
+	}
+
+}
@@ -0,0 +1,217 @@
+package org.usfirst.frc.team4308.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates trapezoidal and S-curve motion profiles. Profiles are meant to be
+ * generated on a desktop or as part of the build with {@link #main(String[])}
+ * and copied to the robot as a {@link ProfileStore} file, rather than computed
+ * on the robot at the start of a match.
+ * <p>
+ * An S-curve profile limits jerk as well as acceleration, ramping the
+ * acceleration up and down for smoother motion. A trapezoidal profile is the
+ * same with unlimited jerk. Both start and end at rest, and short moves that
+ * never reach the maximum velocity or acceleration peak lower.
+ */
+public class ProfileGenerator {
+
+	/**
+	 * One cycle of the 200 Hz control loop.
+	 */
+	public static final double defaultTimeStep = 0.005;
+
+	private static final int searchIterations = 60;
+
+	private final double timeStep;
+
+	public ProfileGenerator() {
+		this(defaultTimeStep);
+	}
+
+	public ProfileGenerator(double timeStep) {
+		if (timeStep <= 0.0) {
+			throw new IllegalArgumentException("Time step must be positive: " + timeStep);
+		}
+		this.timeStep = timeStep;
+	}
+
+	public MotionProfile trapezoid(String name, double distance, double maxVelocity, double maxAcceleration) {
+		return sCurve(name, distance, maxVelocity, maxAcceleration, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * @param distance
+	 *            signed length of the move
+	 * @param maxJerk
+	 *            largest rate of change of acceleration, or infinity for a
+	 *            trapezoidal profile
+	 */
+	public MotionProfile sCurve(String name, double distance, double maxVelocity, double maxAcceleration,
+			double maxJerk) {
+		if (maxVelocity <= 0.0 || maxAcceleration <= 0.0 || maxJerk <= 0.0) {
+			throw new IllegalArgumentException("Profile limits must be positive");
+		}
+		double sign = Math.signum(distance);
+		double length = Math.abs(distance);
+
+		// Find the highest cruise velocity whose ramps up and down fit in the
+		// distance; the ramp distance grows with the cruise velocity.
+		double velocity = maxVelocity;
+		if (2.0 * rampDistance(velocity, maxAcceleration, maxJerk) > length) {
+			double low = 0.0;
+			double high = maxVelocity;
+			for (int i = 0; i < searchIterations; i++) {
+				double middle = 0.5 * (low + high);
+				if (2.0 * rampDistance(middle, maxAcceleration, maxJerk) > length) {
+					high = middle;
+				} else {
+					low = middle;
+				}
+			}
+			velocity = low;
+		}
+
+		Ramp ramp = new Ramp(velocity, maxAcceleration, maxJerk);
+		double cruiseTime = velocity > 0.0 ? (length - 2.0 * ramp.distance) / velocity : 0.0;
+		double duration = 2.0 * ramp.duration + cruiseTime;
+
+		int samples = (int) Math.ceil(duration / timeStep) + 1;
+		ByteBuffer records = ByteBuffer.allocate(samples * MotionProfile.recordBytes);
+		for (int i = 0; i < samples; i++) {
+			double time = Math.min(i * timeStep, duration);
+			double position, speed, acceleration;
+			if (time < ramp.duration) {
+				position = ramp.position(time);
+				speed = ramp.velocity(time);
+				acceleration = ramp.acceleration(time);
+			} else if (time <= ramp.duration + cruiseTime) {
+				position = ramp.distance + velocity * (time - ramp.duration);
+				speed = velocity;
+				acceleration = 0.0;
+			} else {
+				double remaining = duration - time;
+				position = length - ramp.position(remaining);
+				speed = ramp.velocity(remaining);
+				acceleration = -ramp.acceleration(remaining);
+			}
+			records.putFloat((float) (sign * position));
+			records.putFloat((float) (sign * speed));
+			records.putFloat((float) (sign * acceleration));
+		}
+		records.flip();
+		return new MotionProfile(name, timeStep, records);
+	}
+
+	private static double rampDistance(double velocity, double maxAcceleration, double maxJerk) {
+		return new Ramp(velocity, maxAcceleration, maxJerk).distance;
+	}
+
+	/**
+	 * Speeding up from rest to a velocity: jerk up to the peak acceleration,
+	 * hold it, then jerk back down to zero acceleration. Slowing down is the
+	 * same ramp run backwards in time.
+	 */
+	private static class Ramp {
+		private final double velocity;
+		private final double jerk;
+		private final double peak;
+		private final double jerkTime;
+		private final double duration;
+		private final double distance;
+
+		private Ramp(double velocity, double maxAcceleration, double maxJerk) {
+			this.velocity = velocity;
+			this.jerk = maxJerk;
+			// Without time to reach full acceleration the peak is lower.
+			double peak = Double.isInfinite(maxJerk) ? maxAcceleration
+					: Math.min(maxAcceleration, Math.sqrt(velocity * maxJerk));
+			this.peak = peak;
+			this.jerkTime = Double.isInfinite(maxJerk) ? 0.0 : peak / maxJerk;
+			this.duration = velocity > 0.0 ? velocity / peak + jerkTime : 0.0;
+			this.distance = 0.5 * velocity * duration;
+		}
+
+		private double acceleration(double t) {
+			if (t >= duration) {
+				return 0.0;
+			} else if (t < jerkTime) {
+				return jerk * t;
+			} else if (t > duration - jerkTime) {
+				return jerk * (duration - t);
+			}
+			return peak;
+		}
+
+		private double velocity(double t) {
+			if (t >= duration) {
+				return velocity;
+			} else if (t < jerkTime) {
+				return 0.5 * jerk * t * t;
+			} else if (t > duration - jerkTime) {
+				double left = duration - t;
+				return velocity - 0.5 * jerk * left * left;
+			}
+			return 0.5 * peak * jerkTime + peak * (t - jerkTime);
+		}
+
+		private double position(double t) {
+			if (t >= duration) {
+				return distance;
+			} else if (t < jerkTime) {
+				return jerk * t * t * t / 6.0;
+			} else if (t > duration - jerkTime) {
+				double left = duration - t;
+				return distance - velocity * left + jerk * left * left * left / 6.0;
+			}
+			double start = 0.5 * peak * jerkTime;
+			double elapsed = t - jerkTime;
+			return peak * jerkTime * jerkTime / 6.0 + start * elapsed + 0.5 * peak * elapsed * elapsed;
+		}
+	}
+
+	/**
+	 * Writes a profile file for the robot. Each profile is given as
+	 * {@code name:distance:maxVelocity:maxAcceleration}, with an optional
+	 * {@code :maxJerk} for an S-curve.
+	 *
+	 * <pre>
+	 * java ProfileGenerator [-dt seconds] output.bin "Default:120:60:40" "My Auto:60:40:30:120"
+	 * </pre>
+	 */
+	public static void main(String[] args) throws IOException {
+		int argument = 0;
+		double timeStep = defaultTimeStep;
+		if (args.length > 1 && args[0].equals("-dt")) {
+			timeStep = Double.parseDouble(args[1]);
+			argument = 2;
+		}
+		if (args.length - argument < 2) {
+			System.err.println("Usage: ProfileGenerator [-dt seconds] output name:distance:maxVelocity:maxAcceleration"
+					+ "[:maxJerk] ...");
+			System.exit(1);
+		}
+		ProfileGenerator generator = new ProfileGenerator(timeStep);
+		String output = args[argument++];
+		List<MotionProfile> profiles = new ArrayList<>();
+		for (; argument < args.length; argument++) {
+			String[] fields = args[argument].split(":");
+			if (fields.length != 4 && fields.length != 5) {
+				throw new IllegalArgumentException("Bad profile specification: " + args[argument]);
+			}
+			double distance = Double.parseDouble(fields[1]);
+			double velocity = Double.parseDouble(fields[2]);
+			double acceleration = Double.parseDouble(fields[3]);
+			MotionProfile profile = fields.length == 5
+					? generator.sCurve(fields[0], distance, velocity, acceleration, Double.parseDouble(fields[4]))
+					: generator.trapezoid(fields[0], distance, velocity, acceleration);
+			profiles.add(profile);
+			System.out.println(profile);
+		}
+		ProfileStore.write(Paths.get(output), profiles);
+	}
+
+}
@@ -0,0 +1,151 @@
+package org.usfirst.frc.team4308.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Named motion profiles saved together in one binary file, generated ahead of
+ * time by {@link ProfileGenerator} and loaded on the robot by memory mapping
+ * the file, so profiles are available as soon as the file is opened without
+ * being parsed or copied.
+ * <p>
+ * The file is a header, a directory with one entry per profile, and then the
+ * profile records. All values are big endian:
+ *
+ * <pre>
+ * header:    int magic, int version, int profile count
+ * directory: byte[32] name (UTF-8, zero padded), int sample count,
+ *            double time step, int offset of the first record
+ * records:   float position, float velocity, float acceleration
+ * </pre>
+ */
+public class ProfileStore {
+
+	public static final int magic = 0x4D505246; // "MPRF"
+	public static final int version = 1;
+
+	private static final int headerBytes = 12;
+	private static final int entryBytes = MotionProfile.maxNameBytes + 16;
+
+	private final Map<String, MotionProfile> profiles;
+
+	private ProfileStore(Map<String, MotionProfile> profiles) {
+		this.profiles = Collections.unmodifiableMap(profiles);
+	}
+
+	/**
+	 * Maps a profile file into memory. The file can be closed once mapped; the
+	 * mapping stays valid until the profiles are garbage collected.
+	 */
+	public static ProfileStore load(Path file) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		return read(buffer);
+	}
+
+	/**
+	 * Reads profiles from a buffer holding a profile file, sharing its memory.
+	 */
+	public static ProfileStore read(ByteBuffer buffer) throws IOException {
+		if (buffer.capacity() < headerBytes || buffer.getInt(0) != magic) {
+			throw new IOException("Not a motion profile file");
+		}
+		if (buffer.getInt(4) != version) {
+			throw new IOException("Unsupported motion profile file version " + buffer.getInt(4));
+		}
+		int count = buffer.getInt(8);
+		if (count < 0 || headerBytes + (long) count * entryBytes > buffer.capacity()) {
+			throw new IOException("Motion profile directory is truncated");
+		}
+		Map<String, MotionProfile> profiles = new LinkedHashMap<>();
+		byte[] nameBytes = new byte[MotionProfile.maxNameBytes];
+		for (int i = 0; i < count; i++) {
+			int entry = headerBytes + i * entryBytes;
+			ByteBuffer nameView = buffer.duplicate();
+			nameView.position(entry);
+			nameView.get(nameBytes);
+			int length = 0;
+			while (length < nameBytes.length && nameBytes[length] != 0) {
+				length++;
+			}
+			String name = new String(nameBytes, 0, length, StandardCharsets.UTF_8);
+			int samples = buffer.getInt(entry + MotionProfile.maxNameBytes);
+			double timeStep = buffer.getDouble(entry + MotionProfile.maxNameBytes + 4);
+			int offset = buffer.getInt(entry + MotionProfile.maxNameBytes + 12);
+			long end = offset + (long) samples * MotionProfile.recordBytes;
+			if (samples <= 0 || offset < 0 || end > buffer.capacity()) {
+				throw new IOException("Motion profile " + name + " is truncated");
+			}
+			ByteBuffer records = buffer.duplicate();
+			records.limit((int) end);
+			records.position(offset);
+			profiles.put(name, new MotionProfile(name, timeStep, records));
+		}
+		return new ProfileStore(profiles);
+	}
+
+	/**
+	 * Writes profiles to a file in the format read by {@link #load(Path)}.
+	 */
+	public static void write(Path file, Collection<MotionProfile> profiles) throws IOException {
+		int offset = headerBytes + profiles.size() * entryBytes;
+		ByteBuffer directory = ByteBuffer.allocate(offset);
+		directory.putInt(magic).putInt(version).putInt(profiles.size());
+		for (MotionProfile profile : profiles) {
+			byte[] name = profile.getName().getBytes(StandardCharsets.UTF_8);
+			if (name.length > MotionProfile.maxNameBytes) {
+				throw new IllegalArgumentException("Profile name is longer than " + MotionProfile.maxNameBytes
+						+ " bytes: " + profile.getName());
+			}
+			directory.put(name).put(new byte[MotionProfile.maxNameBytes - name.length]);
+			directory.putInt(profile.getSampleCount()).putDouble(profile.getTimeStep()).putInt(offset);
+			offset += profile.getSampleCount() * MotionProfile.recordBytes;
+		}
+		directory.flip();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(channel, directory);
+			for (MotionProfile profile : profiles) {
+				writeFully(channel, profile.getRecords());
+			}
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * @return the named profile, or null if there is none
+	 */
+	public MotionProfile get(String name) {
+		return profiles.get(name);
+	}
+
+	public Set<String> getNames() {
+		return profiles.keySet();
+	}
+
+	public Collection<MotionProfile> getProfiles() {
+		return profiles.values();
+	}
+
+	public int size() {
+		return profiles.size();
+	}
+
+}
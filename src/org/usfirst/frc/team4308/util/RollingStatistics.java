@@ -0,0 +1,205 @@
+package org.usfirst.frc.team4308.util;
+
+/**
+ * Mean, variance, sum, minimum and maximum of the last N samples of a signal,
+ * kept up to date as each sample arrives. The window is held in a
+ * {@link DoubleRingBuffer}, the mean and variance are updated incrementally,
+ * and the minimum and maximum are tracked with monotonic deques, so adding a
+ * sample is constant time (amortized) and never allocates.
+ * <p>
+ * To stop rounding errors from building up over a long match, the mean and
+ * variance are recomputed exactly from the window once every N samples.
+ */
+public class RollingStatistics {
+
+	/**
+	 * Deque of window positions whose values are in monotonic order, so the
+	 * front is always the extreme value of the window.
+	 */
+	private static class MonotonicDeque {
+		private final boolean maximum;
+		private final long[] sequences;
+		private final double[] values;
+		private int head;
+		private int size;
+
+		private MonotonicDeque(int capacity, boolean maximum) {
+			this.maximum = maximum;
+			this.sequences = new long[capacity];
+			this.values = new double[capacity];
+		}
+
+		private void add(long sequence, double value) {
+			// Values the new one dominates can never be the extreme again.
+			while (size > 0) {
+				double back = values[index(size - 1)];
+				if (maximum ? back <= value : back >= value) {
+					size--;
+				} else {
+					break;
+				}
+			}
+			int tail = index(size);
+			sequences[tail] = sequence;
+			values[tail] = value;
+			size++;
+		}
+
+		private void expire(long oldestSequence) {
+			while (size > 0 && sequences[head] < oldestSequence) {
+				head = index(1);
+				size--;
+			}
+		}
+
+		private double front() {
+			return values[head];
+		}
+
+		private int index(int offset) {
+			int index = head + offset;
+			return index >= sequences.length ? index - sequences.length : index;
+		}
+
+		private void clear() {
+			head = 0;
+			size = 0;
+		}
+	}
+
+	private final DoubleRingBuffer window;
+	private final MonotonicDeque minimum;
+	private final MonotonicDeque maximum;
+
+	private long sequence;
+	private double mean;
+	private double squaredDeviations;
+	private int sinceRecompute;
+
+	public RollingStatistics(int windowSize) {
+		window = new DoubleRingBuffer(windowSize);
+		minimum = new MonotonicDeque(windowSize, false);
+		maximum = new MonotonicDeque(windowSize, true);
+	}
+
+	public void add(double value) {
+		int capacity = window.capacity();
+		if (window.isFull()) {
+			double removed = window.first();
+			double oldMean = mean;
+			mean += (value - removed) / capacity;
+			squaredDeviations += (value - removed) * (value - mean + removed - oldMean);
+		} else {
+			int count = window.size() + 1;
+			double delta = value - mean;
+			mean += delta / count;
+			squaredDeviations += delta * (value - mean);
+		}
+		window.add(value);
+
+		long oldest = sequence - capacity + 1;
+		minimum.expire(oldest);
+		maximum.expire(oldest);
+		minimum.add(sequence, value);
+		maximum.add(sequence, value);
+		sequence++;
+
+		if (++sinceRecompute >= capacity) {
+			recompute();
+		}
+	}
+
+	/**
+	 * Recomputes the mean and variance exactly from the samples in the window.
+	 */
+	private void recompute() {
+		int count = window.size();
+		double sum = 0.0;
+		for (int i = 0; i < count; i++) {
+			sum += window.get(i);
+		}
+		double newMean = count == 0 ? 0.0 : sum / count;
+		double deviations = 0.0;
+		for (int i = 0; i < count; i++) {
+			double delta = window.get(i) - newMean;
+			deviations += delta * delta;
+		}
+		mean = newMean;
+		squaredDeviations = deviations;
+		sinceRecompute = 0;
+	}
+
+	/**
+	 * @return the number of samples in the window
+	 */
+	public int getCount() {
+		return window.size();
+	}
+
+	public int getWindowSize() {
+		return window.capacity();
+	}
+
+	public boolean isEmpty() {
+		return window.isEmpty();
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public double getSum() {
+		return mean * window.size();
+	}
+
+	/**
+	 * @return the population variance of the samples in the window
+	 */
+	public double getVariance() {
+		int count = window.size();
+		return count == 0 ? 0.0 : Math.max(0.0, squaredDeviations / count);
+	}
+
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * @return the smallest sample in the window, or NaN if it is empty
+	 */
+	public double getMin() {
+		return window.isEmpty() ? Double.NaN : minimum.front();
+	}
+
+	/**
+	 * @return the largest sample in the window, or NaN if it is empty
+	 */
+	public double getMax() {
+		return window.isEmpty() ? Double.NaN : maximum.front();
+	}
+
+	/**
+	 * @return the most recent sample, or NaN if the window is empty
+	 */
+	public double getLatest() {
+		return window.isEmpty() ? Double.NaN : window.last();
+	}
+
+	/**
+	 * @return the samples in the window, oldest first, which must not be
+	 *         modified
+	 */
+	public DoubleRingBuffer getWindow() {
+		return window;
+	}
+
+	public void clear() {
+		window.clear();
+		minimum.clear();
+		maximum.clear();
+		mean = 0.0;
+		squaredDeviations = 0.0;
+		sinceRecompute = 0;
+	}
+
+}
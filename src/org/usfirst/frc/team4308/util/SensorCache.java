@@ -0,0 +1,243 @@
+package org.usfirst.frc.team4308.util;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Samples hardware signals once per configured period from one loop, so every
+ * consumer reads the cached value instead of making its own CAN or JNI call.
+ * Each {@link Signal} keeps its latest sample and when it was taken, and a
+ * staleness budget consumers can check with {@link Signal#isStale()}.
+ * <p>
+ * Run the cache on a looper at least as fast as its fastest signal. Reading a
+ * signal never blocks or allocates. Signals can be added while the cache
+ * runs.
+ */
+public class SensorCache implements Loop {
+
+	/**
+	 * A sampled signal. Booleans are sampled as 1 or 0.
+	 */
+	public static final class Signal {
+		private final String name;
+		private final DoubleSupplier source;
+		private final Clock clock;
+		private volatile long periodNanos;
+		private volatile long maxAgeNanos;
+
+		private volatile double value;
+		private volatile long timestamp;
+		private volatile boolean sampled;
+
+		// Only touched by the cache thread.
+		private long nextSample;
+
+		private Signal(String name, DoubleSupplier source, Clock clock, long periodNanos) {
+			this.name = name;
+			this.source = source;
+			this.clock = clock;
+			this.periodNanos = periodNanos;
+			this.maxAgeNanos = 2 * periodNanos;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the latest sample, or 0 before the first one
+		 */
+		public double get() {
+			return value;
+		}
+
+		public boolean getBoolean() {
+			return value != 0.0;
+		}
+
+		/**
+		 * @return the latest sample, or the fallback if it is stale
+		 */
+		public double get(double fallback) {
+			return isStale() ? fallback : value;
+		}
+
+		/**
+		 * @return the cache clock time of the latest sample, in nanoseconds.
+		 *         The value read afterwards is at least as new.
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public boolean hasSample() {
+			return sampled;
+		}
+
+		/**
+		 * @return seconds since the latest sample was taken
+		 */
+		public double getAge() {
+			return (clock.nanoTime() - timestamp) / 1e9;
+		}
+
+		/**
+		 * Sets how old a sample can be before it is stale. Defaults to two
+		 * sample periods, so one late sample is tolerated.
+		 */
+		public void setMaxAge(double seconds) {
+			maxAgeNanos = (long) (seconds * 1e9);
+		}
+
+		public double getMaxAge() {
+			return maxAgeNanos / 1e9;
+		}
+
+		/**
+		 * Declares that a consumer needs samples no older than the given age,
+		 * sampling more often if needed to meet it. Budgets only tighten, so
+		 * every consumer's requirement is met.
+		 */
+		public synchronized void require(double maxAge) {
+			long nanos = (long) (maxAge * 1e9);
+			if (nanos <= 0) {
+				throw new IllegalArgumentException("Maximum age must be positive: " + maxAge);
+			}
+			if (nanos < maxAgeNanos) {
+				maxAgeNanos = nanos;
+			}
+			if (nanos / 2 < periodNanos) {
+				periodNanos = nanos / 2;
+			}
+		}
+
+		public double getPeriod() {
+			return periodNanos / 1e9;
+		}
+
+		private boolean isStale(long now) {
+			return !sampled || now - timestamp > maxAgeNanos;
+		}
+
+		/**
+		 * @return true if there is no sample yet or it is older than the
+		 *         maximum age, as of the cache's clock
+		 */
+		public boolean isStale() {
+			return isStale(clock.nanoTime());
+		}
+	}
+
+	private static SensorCache instance;
+
+	private final String name;
+	private final Clock clock;
+
+	private volatile Signal[] signals = new Signal[0];
+	private volatile long sampleCount;
+
+	public SensorCache(String name) {
+		this(name, Clock.system);
+	}
+
+	public SensorCache(String name, Clock clock) {
+		this.name = name;
+		this.clock = clock;
+	}
+
+	/**
+	 * @return the cache shared by the robot's subsystems
+	 */
+	public static synchronized SensorCache getInstance() {
+		if (instance == null) {
+			instance = new SensorCache("Sensors");
+		}
+		return instance;
+	}
+
+	/**
+	 * @param period
+	 *            seconds between samples
+	 */
+	public synchronized Signal add(String name, DoubleSupplier source, double period) {
+		if (source == null) {
+			throw new IllegalArgumentException("Signal " + name + " has no source");
+		}
+		if (period <= 0.0) {
+			throw new IllegalArgumentException("Sample period must be positive: " + period);
+		}
+		Signal signal = new Signal(name, source, clock, (long) (period * 1e9));
+		Signal[] current = signals;
+		Signal[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = signal;
+		signals = updated;
+		return signal;
+	}
+
+	public Signal addBoolean(String name, BooleanSupplier source, double period) {
+		return add(name, () -> source.getAsBoolean() ? 1.0 : 0.0, period);
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void start() {
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	/**
+	 * Samples every signal that is due.
+	 */
+	@Override
+	public void loop() {
+		long now = clock.nanoTime();
+		Signal[] current = signals;
+		long count = 0;
+		for (int i = 0; i < current.length; i++) {
+			Signal signal = current[i];
+			if (signal.sampled && now - signal.nextSample < 0) {
+				continue;
+			}
+			signal.nextSample = now + signal.periodNanos;
+			signal.value = signal.source.getAsDouble();
+			signal.timestamp = now;
+			signal.sampled = true;
+			count++;
+		}
+		sampleCount += count;
+	}
+
+	/**
+	 * @return the number of signals that have no sample or an old one
+	 */
+	public int getStaleCount() {
+		long now = clock.nanoTime();
+		Signal[] current = signals;
+		int stale = 0;
+		for (int i = 0; i < current.length; i++) {
+			if (current[i].isStale(now)) {
+				stale++;
+			}
+		}
+		return stale;
+	}
+
+	/**
+	 * @return the number of hardware reads made
+	 */
+	public long getSampleCount() {
+		return sampleCount;
+	}
+
+	public Clock getClock() {
+		return clock;
+	}
+
+}
@@ -0,0 +1,325 @@
+package org.usfirst.frc.team4308.util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.GenericHID;
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * Records signals at full loop rate into a preallocated, memory mapped file,
+ * for analysis after a match with {@link SignalLogReader}. Each
+ * {@link #loop()} samples every signal and writes one fixed width record
+ * straight into the mapping, so recording takes no system calls, locks or
+ * allocation; the operating system writes the pages back in the background.
+ * <p>
+ * Each call to {@link #open()} starts a new numbered file in the log
+ * directory, such as once per match. Signals are fixed when a file is opened,
+ * and are written to its header. When a file is full, further records are
+ * dropped and counted. All values are big endian:
+ *
+ * <pre>
+ * header:  int magic, int version, int signal count, int record size,
+ *          long record capacity, long record count, long start time (epoch ms),
+ *          then for each signal a short length and its UTF-8 name,
+ *          zero padded to a multiple of 8 bytes
+ * records: long timestamp (ns), double value of each signal
+ * </pre>
+ */
+public class SignalLog implements Loop {
+
+	public static final int magic = 0x534C4F47; // "SLOG"
+	public static final int version = 1;
+	public static final String extension = ".slog";
+
+	static final int signalCountOffset = 8;
+	static final int recordBytesOffset = 12;
+	static final int capacityOffset = 16;
+	static final int recordCountOffset = 24;
+	static final int startTimeOffset = 32;
+	static final int fixedHeaderBytes = 40;
+
+	private static final int pageBytes = 4096;
+
+	/**
+	 * An open file and the signals written to it.
+	 */
+	private static class Recording {
+		private final Path path;
+		private final MappedByteBuffer buffer;
+		private final DoubleSupplier[] sources;
+		private final int headerBytes;
+		private final int recordBytes;
+		private final long capacity;
+
+		// Only touched by the loop thread.
+		private long count;
+
+		private Recording(Path path, MappedByteBuffer buffer, DoubleSupplier[] sources, int headerBytes,
+				long capacity) {
+			this.path = path;
+			this.buffer = buffer;
+			this.sources = sources;
+			this.headerBytes = headerBytes;
+			this.recordBytes = 8 + 8 * sources.length;
+			this.capacity = capacity;
+		}
+	}
+
+	private final String name;
+	private final Path directory;
+	private final long capacity;
+	private final Clock clock;
+
+	private final List<String> names = new ArrayList<>();
+	private final List<DoubleSupplier> sources = new ArrayList<>();
+
+	private volatile Recording recording;
+	private volatile long droppedCount;
+	private volatile String[] reads = new String[0];
+
+	/**
+	 * @param directory
+	 *            directory the numbered log files are created in
+	 * @param capacity
+	 *            number of records preallocated in each file
+	 */
+	public SignalLog(String name, Path directory, long capacity) {
+		this(name, directory, capacity, Clock.system);
+	}
+
+	public SignalLog(String name, Path directory, long capacity, Clock clock) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.name = name;
+		this.directory = directory;
+		this.capacity = capacity;
+		this.clock = clock;
+	}
+
+	/**
+	 * Adds a signal, recorded from the next file opened.
+	 */
+	public synchronized void addSignal(String name, DoubleSupplier source) {
+		if (source == null) {
+			throw new IllegalArgumentException("Signal " + name + " has no source");
+		}
+		if (names.contains(name)) {
+			throw new IllegalArgumentException("Signal " + name + " is already recorded");
+		}
+		names.add(name);
+		sources.add(source);
+	}
+
+	/**
+	 * Records a boolean signal as 1 or 0.
+	 */
+	public void addBoolean(String name, BooleanSupplier source) {
+		addSignal(name, () -> source.getAsBoolean() ? 1.0 : 0.0);
+	}
+
+	/**
+	 * Records the voltage, current and temperature of a powered subsystem.
+	 */
+	public void addPowered(String name, Powered source) {
+		addSignal(name + " Voltage", source::voltage);
+		addSignal(name + " Current", source::current);
+		addSignal(name + " Temperature", source::temperature);
+	}
+
+	/**
+	 * Records the output last set on a speed controller.
+	 */
+	public void addOutput(String name, SpeedController controller) {
+		addSignal(name, controller::get);
+	}
+
+	/**
+	 * Records the axes and buttons of a joystick, with buttons numbered from 1
+	 * as on the driver station, and the number of axes it reports so replays
+	 * can tell the type of controller.
+	 */
+	public void addJoystick(String name, GenericHID joystick, int axes, int buttons) {
+		addSignal(name + " Axis Count", joystick::getAxisCount);
+		for (int i = 0; i < axes; i++) {
+			int axis = i;
+			addSignal(name + " Axis " + axis, () -> joystick.getRawAxis(axis));
+		}
+		for (int i = 1; i <= buttons; i++) {
+			int button = i;
+			addBoolean(name + " Button " + button, () -> joystick.getRawButton(button));
+		}
+	}
+
+	/**
+	 * Closes the current file, if any, and starts recording into the next
+	 * numbered file in the directory. Creates and preallocates the file, so
+	 * call it between matches rather than from a control loop.
+	 *
+	 * @return the new file
+	 */
+	public synchronized Path open() throws IOException {
+		close();
+		Files.createDirectories(directory);
+		Path path = nextPath();
+
+		byte[][] encoded = new byte[names.size()][];
+		int headerBytes = fixedHeaderBytes;
+		for (int i = 0; i < encoded.length; i++) {
+			encoded[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+			if (encoded[i].length > Short.MAX_VALUE) {
+				throw new IllegalArgumentException("Signal name is too long: " + names.get(i));
+			}
+			headerBytes += 2 + encoded[i].length;
+		}
+		headerBytes = (headerBytes + 7) & ~7;
+		int recordBytes = 8 + 8 * encoded.length;
+		long size = headerBytes + capacity * recordBytes;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Log file would be larger than 2 GB, lower the capacity");
+		}
+
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+		buffer.putInt(0, magic);
+		buffer.putInt(4, version);
+		buffer.putInt(signalCountOffset, encoded.length);
+		buffer.putInt(recordBytesOffset, recordBytes);
+		buffer.putLong(capacityOffset, capacity);
+		buffer.putLong(recordCountOffset, 0);
+		buffer.putLong(startTimeOffset, System.currentTimeMillis());
+		buffer.position(fixedHeaderBytes);
+		for (byte[] bytes : encoded) {
+			buffer.putShort((short) bytes.length);
+			buffer.put(bytes);
+		}
+		// Touch every page now, so the loop never waits on the file system
+		// to allocate one.
+		for (long offset = headerBytes; offset < size; offset += pageBytes) {
+			buffer.put((int) offset, (byte) 0);
+		}
+
+		recording = new Recording(path, buffer, sources.toArray(new DoubleSupplier[sources.size()]), headerBytes,
+				capacity);
+		droppedCount = 0;
+		return path;
+	}
+
+	private Path nextPath() {
+		for (int index = 1;; index++) {
+			Path path = directory.resolve(String.format("%s-%04d%s", name, index, extension));
+			if (!Files.exists(path)) {
+				return path;
+			}
+		}
+	}
+
+	/**
+	 * Stops recording and asks the operating system to write the file out.
+	 * The file keeps its preallocated size; readers use the record count in
+	 * its header.
+	 */
+	public synchronized void close() {
+		Recording current = recording;
+		if (current == null) {
+			return;
+		}
+		recording = null;
+		current.buffer.force();
+	}
+
+	public boolean isOpen() {
+		return recording != null;
+	}
+
+	/**
+	 * @return the file being recorded, or null if none is open
+	 */
+	public Path getPath() {
+		Recording current = recording;
+		return current == null ? null : current.path;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Declares the shared state the signals are sampled from, so a looper
+	 * records them after the loops writing it. Loopers read this when the log
+	 * is added, so set it first.
+	 */
+	public void setReads(String... state) {
+		reads = state.clone();
+	}
+
+	@Override
+	public String[] reads() {
+		return reads.clone();
+	}
+
+	@Override
+	public void start() {
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	/**
+	 * Samples every signal into the next record of the open file.
+	 */
+	@Override
+	public void loop() {
+		Recording current = recording;
+		if (current == null) {
+			return;
+		}
+		if (current.count == current.capacity) {
+			droppedCount++;
+			return;
+		}
+		MappedByteBuffer buffer = current.buffer;
+		int position = (int) (current.headerBytes + current.count * current.recordBytes);
+		buffer.putLong(position, clock.nanoTime());
+		DoubleSupplier[] sources = current.sources;
+		for (int i = 0; i < sources.length; i++) {
+			buffer.putDouble(position + 8 + 8 * i, sources[i].getAsDouble());
+		}
+		buffer.putLong(recordCountOffset, ++current.count);
+	}
+
+	/**
+	 * @return the number of records written to the open file
+	 */
+	public long getRecordCount() {
+		Recording current = recording;
+		return current == null ? 0 : current.count;
+	}
+
+	/**
+	 * @return the number of records lost because the open file was full
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	public long getCapacity() {
+		return capacity;
+	}
+
+}
@@ -0,0 +1,198 @@
+package org.usfirst.frc.team4308.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file written by {@link SignalLog}, on the robot or a desktop, and
+ * exports it as CSV:
+ *
+ * <pre>
+ * java SignalLogReader log.slog [output.csv]
+ * </pre>
+ *
+ * Without an output file, the CSV is written to standard output.
+ */
+public class SignalLogReader {
+
+	private final ByteBuffer buffer;
+	private final String[] names;
+	private final int headerBytes;
+	private final int recordBytes;
+	private final int recordCount;
+	private final long startTime;
+
+	private SignalLogReader(ByteBuffer buffer, String[] names, int headerBytes, int recordBytes, int recordCount,
+			long startTime) {
+		this.buffer = buffer;
+		this.names = names;
+		this.headerBytes = headerBytes;
+		this.recordBytes = recordBytes;
+		this.recordCount = recordCount;
+		this.startTime = startTime;
+	}
+
+	/**
+	 * Maps a log file into memory.
+	 */
+	public static SignalLogReader load(Path file) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		return read(buffer);
+	}
+
+	/**
+	 * Reads a log from a buffer holding a log file, sharing its memory.
+	 */
+	public static SignalLogReader read(ByteBuffer buffer) throws IOException {
+		if (buffer.capacity() < SignalLog.fixedHeaderBytes || buffer.getInt(0) != SignalLog.magic) {
+			throw new IOException("Not a signal log file");
+		}
+		if (buffer.getInt(4) != SignalLog.version) {
+			throw new IOException("Unsupported signal log version " + buffer.getInt(4));
+		}
+		int signalCount = buffer.getInt(SignalLog.signalCountOffset);
+		int recordBytes = buffer.getInt(SignalLog.recordBytesOffset);
+		long count = buffer.getLong(SignalLog.recordCountOffset);
+		if (signalCount < 0 || recordBytes != 8 + 8 * signalCount || count < 0) {
+			throw new IOException("Signal log header is corrupt");
+		}
+
+		String[] names = new String[signalCount];
+		int position = SignalLog.fixedHeaderBytes;
+		for (int i = 0; i < signalCount; i++) {
+			if (position + 2 > buffer.capacity()) {
+				throw new IOException("Signal log header is truncated");
+			}
+			int length = buffer.getShort(position);
+			position += 2;
+			if (length < 0 || position + length > buffer.capacity()) {
+				throw new IOException("Signal log header is truncated");
+			}
+			byte[] bytes = new byte[length];
+			ByteBuffer view = buffer.duplicate();
+			view.position(position);
+			view.get(bytes);
+			names[i] = new String(bytes, StandardCharsets.UTF_8);
+			position += length;
+		}
+		int headerBytes = (position + 7) & ~7;
+
+		// A file cut short keeps the records that were written out.
+		long available = (buffer.capacity() - headerBytes) / recordBytes;
+		int recordCount = (int) Math.max(0, Math.min(count, available));
+		return new SignalLogReader(buffer, names, headerBytes, recordBytes, recordCount,
+				buffer.getLong(SignalLog.startTimeOffset));
+	}
+
+	public int getSignalCount() {
+		return names.length;
+	}
+
+	public String getSignalName(int signal) {
+		return names[signal];
+	}
+
+	/**
+	 * @return the index of the named signal, or -1 if it was not recorded
+	 */
+	public int indexOf(String name) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * @return the wall clock time the file was opened, in epoch milliseconds
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * @return the loop clock time of the record, in nanoseconds
+	 */
+	public long getTimestamp(int record) {
+		return buffer.getLong(offset(record));
+	}
+
+	public double get(int record, int signal) {
+		if (signal < 0 || signal >= names.length) {
+			throw new IndexOutOfBoundsException("No signal " + signal);
+		}
+		return buffer.getDouble(offset(record) + 8 + 8 * signal);
+	}
+
+	private int offset(int record) {
+		if (record < 0 || record >= recordCount) {
+			throw new IndexOutOfBoundsException("No record " + record);
+		}
+		return headerBytes + record * recordBytes;
+	}
+
+	/**
+	 * Writes a header row, then one row per record with its time in seconds
+	 * since the first record.
+	 */
+	public void writeCsv(Writer out) throws IOException {
+		out.write("Time (s)");
+		for (String name : names) {
+			out.write(',');
+			out.write(escape(name));
+		}
+		out.write('\n');
+		long first = recordCount == 0 ? 0 : getTimestamp(0);
+		for (int record = 0; record < recordCount; record++) {
+			out.write(Double.toString((getTimestamp(record) - first) / 1e9));
+			for (int signal = 0; signal < names.length; signal++) {
+				out.write(',');
+				out.write(Double.toString(get(record, signal)));
+			}
+			out.write('\n');
+		}
+		out.flush();
+	}
+
+	private static String escape(String name) {
+		if (name.indexOf(',') < 0 && name.indexOf('"') < 0) {
+			return name;
+		}
+		return '"' + name.replace("\"", "\"\"") + '"';
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: SignalLogReader log" + SignalLog.extension + " [output.csv]");
+			System.exit(1);
+		}
+		SignalLogReader reader = load(Paths.get(args[0]));
+		if (args.length > 1) {
+			try (Writer out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+				reader.writeCsv(out);
+			}
+		} else {
+			reader.writeCsv(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+		}
+		System.err.println(reader.getRecordCount() + " records of " + reader.getSignalCount() + " signals");
+	}
+
+}
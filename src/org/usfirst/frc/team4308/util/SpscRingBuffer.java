@@ -0,0 +1,186 @@
+package org.usfirst.frc.team4308.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue for handing elements from exactly one producer thread to
+ * exactly one consumer thread, such as from a control loop to a telemetry
+ * thread. Neither side locks, blocks or allocates.
+ * <p>
+ * When the queue is full it either refuses the new element, like
+ * {@link FixedArrayList}, or discards the oldest element to make room, like
+ * {@link OverflowingArrayList}. Rejected and discarded elements are counted,
+ * and handed back to the producer by {@link #offer(Object)}.
+ * <p>
+ * To publish records without allocating, preallocate them, reuse the records
+ * {@link #offer(Object)} hands back, and hand consumed records back to the
+ * producer through a second queue running the other way.
+ *
+ * @param <E>
+ *            the element type
+ */
+public class SpscRingBuffer<E> {
+
+	private final Object[] buffer;
+	private final int mask;
+	private final boolean overwrite;
+
+	/** Sequence of the next element to be consumed. */
+	private final AtomicLong head = new AtomicLong();
+	/** Sequence of the next element to be produced, written by the producer. */
+	private final AtomicLong tail = new AtomicLong();
+
+	private volatile long rejected;
+	private volatile long discarded;
+
+	/**
+	 * Creates a queue that refuses new elements when full.
+	 *
+	 * @param capacity
+	 *            the minimum number of elements held, rounded up to a power of
+	 *            two
+	 */
+	public SpscRingBuffer(int capacity) {
+		this(capacity, false);
+	}
+
+	/**
+	 * @param capacity
+	 *            the minimum number of elements held, rounded up to a power of
+	 *            two
+	 * @param overwrite
+	 *            true to discard the oldest element when the queue is full,
+	 *            false to refuse the new one
+	 */
+	public SpscRingBuffer(int capacity, boolean overwrite) {
+		if (capacity <= 0 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.buffer = new Object[size];
+		this.mask = size - 1;
+		this.overwrite = overwrite;
+	}
+
+	/**
+	 * Adds an element to the queue. Must only be called from the producer
+	 * thread.
+	 *
+	 * @return null if the element was added without discarding another, the
+	 *         oldest element if it was discarded to make room, or the element
+	 *         itself if the queue was full and refuses new elements. Either way
+	 *         the returned element is the producer's again, to reuse.
+	 */
+	@SuppressWarnings("unchecked")
+	public E offer(E element) {
+		long t = tail.get();
+		long h = head.get();
+		int index = (int) t & mask;
+		E evicted = null;
+		if (t - h >= buffer.length) {
+			if (!overwrite) {
+				rejected++;
+				return element;
+			}
+			// The consumer may have taken the oldest element in the meantime,
+			// either way there is now room. Only a successful claim makes the
+			// oldest element, in the slot about to be reused, the producer's.
+			if (head.compareAndSet(h, h + 1)) {
+				evicted = (E) buffer[index];
+				discarded++;
+			}
+		}
+		buffer[index] = element;
+		tail.lazySet(t + 1);
+		return evicted;
+	}
+
+	/**
+	 * Removes the oldest element from the queue. Must only be called from the
+	 * consumer thread.
+	 *
+	 * @return the oldest element, or {@code null} if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		while (true) {
+			long h = head.get();
+			if (h >= tail.get()) {
+				return null;
+			}
+			int index = (int) h & mask;
+			E element = (E) buffer[index];
+			if (!overwrite) {
+				buffer[index] = null;
+				head.set(h + 1);
+				return element;
+			}
+			// If the producer discarded this element while it was being read,
+			// the slot may already hold a newer one and the claim fails.
+			if (head.compareAndSet(h, h + 1)) {
+				return element;
+			}
+		}
+	}
+
+	/**
+	 * Removes up to {@code max} elements, oldest first, and passes each to the
+	 * consumer. Must only be called from the consumer thread.
+	 *
+	 * @return the number of elements removed
+	 */
+	public int drain(Consumer<? super E> consumer, int max) {
+		int count = 0;
+		E element;
+		while (count < max && (element = poll()) != null) {
+			consumer.accept(element);
+			count++;
+		}
+		return count;
+	}
+
+	public int drain(Consumer<? super E> consumer) {
+		return drain(consumer, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return the number of elements waiting, which may be stale by the time
+	 *         it is used
+	 */
+	public int size() {
+		long h = head.get();
+		long t = tail.get();
+		return (int) Math.max(0, Math.min(t - h, buffer.length));
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int capacity() {
+		return buffer.length;
+	}
+
+	public boolean isOverwriting() {
+		return overwrite;
+	}
+
+	/**
+	 * @return the number of elements refused because the queue was full
+	 */
+	public long getRejectedCount() {
+		return rejected;
+	}
+
+	/**
+	 * @return the number of unconsumed elements discarded to make room
+	 */
+	public long getDiscardedCount() {
+		return discarded;
+	}
+
+}
@@ -0,0 +1,228 @@
+package org.usfirst.frc.team4308.util;
+
+/**
+ * Swerve drive built from a set of {@link SwerveWheel} modules. Inverse
+ * kinematics turn a chassis velocity (forward, left and counterclockwise
+ * rotation) into a speed and angle for each module; forward kinematics turn
+ * the measured module states back into a chassis velocity with a least
+ * squares fit that is precomputed at construction.
+ * <p>
+ * Every buffer is allocated up front, so driving and running the steering
+ * loops each cycle does not allocate. Register this as a {@link Loop} to run
+ * the steering loops at a fixed rate.
+ */
+public class SwerveDrive implements Loop {
+
+	private final SwerveWheel[] wheels;
+	private final double[] speeds;
+	private final double[] angles;
+
+	/**
+	 * Rows of the least squares solution mapping module velocity components,
+	 * interleaved x then y per module, to chassis velocity.
+	 */
+	private final double[] forwardX;
+	private final double[] forwardY;
+	private final double[] forwardRotation;
+
+	private double maxSpeed = 1.0;
+
+	private double gyroAngle = Double.NaN;
+	private double gyroCos = 1.0;
+	private double gyroSin = 0.0;
+
+	private double chassisX;
+	private double chassisY;
+	private double chassisRotation;
+
+	public SwerveDrive(SwerveWheel... wheels) {
+		if (wheels.length < 2) {
+			throw new IllegalArgumentException("Swerve drive needs at least two wheels");
+		}
+		this.wheels = wheels.clone();
+		speeds = new double[wheels.length];
+		angles = new double[wheels.length];
+		forwardX = new double[2 * wheels.length];
+		forwardY = new double[2 * wheels.length];
+		forwardRotation = new double[2 * wheels.length];
+		computeForwardKinematics();
+	}
+
+	/**
+	 * Each module contributes the rows [1, 0, -y] and [0, 1, x] to the
+	 * inverse kinematics matrix A. The forward solution is the pseudo-inverse
+	 * (A^T A)^-1 A^T, which only depends on the module positions.
+	 */
+	private void computeForwardKinematics() {
+		int n = wheels.length;
+		double sumX = 0.0, sumY = 0.0, sumSquares = 0.0;
+		for (SwerveWheel wheel : wheels) {
+			sumX += wheel.getX();
+			sumY += wheel.getY();
+			sumSquares += wheel.getX() * wheel.getX() + wheel.getY() * wheel.getY();
+		}
+		// A^T A = [[n, 0, -sumY], [0, n, sumX], [-sumY, sumX, sumSquares]]
+		double[][] normal = { { n, 0.0, -sumY }, { 0.0, n, sumX }, { -sumY, sumX, sumSquares } };
+		double[][] inverse = invert(normal);
+		for (int i = 0; i < n; i++) {
+			double x = wheels[i].getX();
+			double y = wheels[i].getY();
+			// Columns of A^T for this module.
+			double[] columnX = { 1.0, 0.0, -y };
+			double[] columnY = { 0.0, 1.0, x };
+			forwardX[2 * i] = dot(inverse[0], columnX);
+			forwardX[2 * i + 1] = dot(inverse[0], columnY);
+			forwardY[2 * i] = dot(inverse[1], columnX);
+			forwardY[2 * i + 1] = dot(inverse[1], columnY);
+			forwardRotation[2 * i] = dot(inverse[2], columnX);
+			forwardRotation[2 * i + 1] = dot(inverse[2], columnY);
+		}
+	}
+
+	private static double dot(double[] a, double[] b) {
+		return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+	}
+
+	private static double[][] invert(double[][] m) {
+		double a = m[0][0], b = m[0][1], c = m[0][2];
+		double d = m[1][0], e = m[1][1], f = m[1][2];
+		double g = m[2][0], h = m[2][1], i = m[2][2];
+		double determinant = a * (e * i - f * h) - b * (d * i - f * g) + c * (d * h - e * g);
+		if (Math.abs(determinant) < 1e-12) {
+			throw new IllegalArgumentException("Wheel positions cannot measure rotation");
+		}
+		double s = 1.0 / determinant;
+		return new double[][] { { (e * i - f * h) * s, (c * h - b * i) * s, (b * f - c * e) * s },
+				{ (f * g - d * i) * s, (a * i - c * g) * s, (c * d - a * f) * s },
+				{ (d * h - e * g) * s, (b * g - a * h) * s, (a * e - b * d) * s } };
+	}
+
+	/**
+	 * Drives relative to the robot.
+	 *
+	 * @param forward
+	 *            speed towards the front of the robot
+	 * @param left
+	 *            speed towards the left of the robot
+	 * @param rotation
+	 *            counterclockwise turn rate in radians per unit of time
+	 *            matching the speeds and module positions
+	 */
+	public void drive(double forward, double left, double rotation) {
+		int n = wheels.length;
+		double fastest = 0.0;
+		for (int i = 0; i < n; i++) {
+			SwerveWheel wheel = wheels[i];
+			double vx = forward - rotation * wheel.getY();
+			double vy = left + rotation * wheel.getX();
+			double speed = Math.sqrt(vx * vx + vy * vy);
+			speeds[i] = speed;
+			// Keep the last angle when stopped instead of snapping to zero.
+			angles[i] = speed == 0.0 ? wheel.getTargetAngle() : Math.atan2(vy, vx);
+			if (speed > fastest) {
+				fastest = speed;
+			}
+		}
+		// Scale every wheel together so the direction of travel is kept.
+		double scale = fastest > maxSpeed ? maxSpeed / fastest : 1.0;
+		for (int i = 0; i < n; i++) {
+			wheels[i].setTarget(speeds[i] * scale / maxSpeed, angles[i]);
+		}
+	}
+
+	/**
+	 * Drives relative to the field, rotating the translation by the gyro
+	 * angle.
+	 *
+	 * @param gyroAngle
+	 *            counterclockwise heading of the robot in radians
+	 */
+	public void driveFieldOriented(double forward, double left, double rotation, double gyroAngle) {
+		if (gyroAngle != this.gyroAngle) {
+			gyroCos = Math.cos(gyroAngle);
+			gyroSin = Math.sin(gyroAngle);
+			this.gyroAngle = gyroAngle;
+		}
+		drive(forward * gyroCos + left * gyroSin, left * gyroCos - forward * gyroSin, rotation);
+	}
+
+	/**
+	 * Estimates the chassis velocity from the measured wheel angles and the
+	 * outputs sent to the drive controllers, scaled by the maximum speed. Read
+	 * the result with {@link #getChassisForward()},
+	 * {@link #getChassisLeft()} and {@link #getChassisRotation()}.
+	 */
+	public void updateChassisSpeeds() {
+		double x = 0.0, y = 0.0, rotation = 0.0;
+		for (int i = 0; i < wheels.length; i++) {
+			SwerveWheel wheel = wheels[i];
+			double speed = wheel.getSpeed() * maxSpeed;
+			double angle = wheel.getAngle();
+			double vx = speed * Math.cos(angle);
+			double vy = speed * Math.sin(angle);
+			x += forwardX[2 * i] * vx + forwardX[2 * i + 1] * vy;
+			y += forwardY[2 * i] * vx + forwardY[2 * i + 1] * vy;
+			rotation += forwardRotation[2 * i] * vx + forwardRotation[2 * i + 1] * vy;
+		}
+		chassisX = x;
+		chassisY = y;
+		chassisRotation = rotation;
+	}
+
+	public double getChassisForward() {
+		return chassisX;
+	}
+
+	public double getChassisLeft() {
+		return chassisY;
+	}
+
+	public double getChassisRotation() {
+		return chassisRotation;
+	}
+
+	/**
+	 * Sets the wheel speed that corresponds to full output. Inputs to
+	 * {@link #drive(double, double, double)} are in the same units, and any
+	 * wheel asked to go faster slows every wheel down in proportion.
+	 */
+	public void setMaxSpeed(double maxSpeed) {
+		if (maxSpeed <= 0.0) {
+			throw new IllegalArgumentException("Max speed must be positive: " + maxSpeed);
+		}
+		this.maxSpeed = maxSpeed;
+	}
+
+	public double getMaxSpeed() {
+		return maxSpeed;
+	}
+
+	public int getWheelCount() {
+		return wheels.length;
+	}
+
+	public SwerveWheel getWheel(int index) {
+		return wheels[index];
+	}
+
+	@Override
+	public void start() {
+		drive(0.0, 0.0, 0.0);
+	}
+
+	@Override
+	public void stop() {
+		for (SwerveWheel wheel : wheels) {
+			wheel.stop();
+		}
+	}
+
+	@Override
+	public void loop() {
+		for (SwerveWheel wheel : wheels) {
+			wheel.update();
+		}
+		updateChassisSpeeds();
+	}
+
+}
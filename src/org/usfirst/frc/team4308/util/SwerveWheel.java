@@ -1,21 +1,150 @@
 package org.usfirst.frc.team4308.util;
 
-import com.ctre.CANTalon;
-
 import edu.wpi.first.wpilibj.Encoder;
 import edu.wpi.first.wpilibj.SpeedController;
 
+/**
+ * One module of a swerve drive: a wheel driven by one speed controller and
+ * steered by another, with an encoder measuring the steering angle. The
+ * module is given a target speed and angle and steers toward it with a
+ * {@link PIDFController} position loop that wraps around the circle, turning
+ * at most 90 degrees by reversing the wheel when that is shorter.
+ * <p>
+ * Angles are in radians counterclockwise, with zero facing the front of the
+ * robot.
+ */
 public class SwerveWheel {
-	
+
+	public static final double defaultSteeringProportional = 1.0;
+
+	private static final double halfPi = 0.5 * Math.PI;
+
 	private SpeedController wheelPower;
 	private SpeedController wheelTurn;
-	
+
 	private Encoder wheelAngle;
 
-	public SwerveWheel(SpeedController power, SpeedController turn, int encoderA, int encoderB) {
+	private final double x;
+	private final double y;
+
+	private final PIDFController steering = new PIDFController(defaultSteeringProportional, 0.0, 0.0, 0.0);
+
+	private double targetSpeed;
+	private double targetAngle;
+	private double steeringError;
+
+	/**
+	 * @param x
+	 *            distance of the wheel forward of the center of rotation
+	 * @param y
+	 *            distance of the wheel left of the center of rotation
+	 * @param radiansPerPulse
+	 *            steering angle turned per encoder pulse
+	 */
+	public SwerveWheel(SpeedController power, SpeedController turn, int encoderA, int encoderB, double x, double y,
+			double radiansPerPulse) {
 		wheelPower = power;
 		wheelTurn = turn;
 		wheelAngle = new Encoder(encoderA, encoderB);
+		wheelAngle.setDistancePerPulse(radiansPerPulse);
+		this.x = x;
+		this.y = y;
+		steering.setContinuous(-Math.PI, Math.PI);
+	}
+
+	/**
+	 * Sets the speed and angle the wheel should drive at. If the wheel is more
+	 * than 90 degrees from the angle, it turns to the opposite angle and drives
+	 * backwards instead.
+	 *
+	 * @param speed
+	 *            wheel output, -1.0 to 1.0
+	 * @param angle
+	 *            direction of travel in radians
+	 */
+	public void setTarget(double speed, double angle) {
+		double error = DriveKinematics.wrap(angle - getAngle());
+		if (error > halfPi) {
+			angle -= Math.PI;
+			speed = -speed;
+		} else if (error < -halfPi) {
+			angle += Math.PI;
+			speed = -speed;
+		}
+		targetSpeed = speed;
+		targetAngle = DriveKinematics.wrap(angle);
+	}
+
+	/**
+	 * Runs one step of the steering loop and sends the outputs to the
+	 * controllers. The drive output is scaled by the cosine of the steering
+	 * error, so a wheel still turning into position does not push the robot
+	 * sideways.
+	 */
+	public void update() {
+		steering.setSetpoint(targetAngle);
+		wheelTurn.set(steering.calculate(getAngle()));
+		steeringError = steering.getError();
+		wheelPower.set(targetSpeed * Math.max(0.0, Math.cos(steeringError)));
+	}
+
+	public void stop() {
+		targetSpeed = 0.0;
+		wheelPower.stopMotor();
+		wheelTurn.stopMotor();
+	}
+
+	/**
+	 * @return the measured steering angle in radians, from -pi to pi
+	 */
+	public double getAngle() {
+		return DriveKinematics.wrap(wheelAngle.getDistance());
+	}
+
+	/**
+	 * @return the output last sent to the drive controller
+	 */
+	public double getSpeed() {
+		return wheelPower.get();
+	}
+
+	public double getTargetSpeed() {
+		return targetSpeed;
+	}
+
+	public double getTargetAngle() {
+		return targetAngle;
+	}
+
+	public double getSteeringError() {
+		return steeringError;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	public void setSteeringProportional(double proportional) {
+		steering.setProportional(proportional);
+	}
+
+	/**
+	 * @return the steering position controller, for tuning its gains, filter
+	 *         and limits
+	 */
+	public PIDFController getSteeringController() {
+		return steering;
+	}
+
+	/**
+	 * Zeros the steering encoder with the wheel facing forward.
+	 */
+	public void resetAngle() {
+		wheelAngle.reset();
 	}
 
 }
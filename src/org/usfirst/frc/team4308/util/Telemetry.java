@@ -0,0 +1,256 @@
+package org.usfirst.frc.team4308.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Dashboard values published from a background loop instead of the control
+ * thread. Each value is registered once for a {@link NumberHandle} or
+ * {@link BooleanHandle}, which writes a primitive into a preallocated slot
+ * without hashing, locking or allocating. Every {@link #loop()} publishes the
+ * values that changed since the last one to the {@link Sink} in one pass, and
+ * skips the rest.
+ * <p>
+ * Run the publisher on its own low rate {@link FixedRateLooper}, so network
+ * table writes never delay the control loops. Each handle should be written by
+ * a single thread; the publisher only sees the latest value written.
+ */
+public class Telemetry implements Loop {
+
+	public static final int defaultCapacity = 256;
+
+	/**
+	 * Raw bits of a slot that has never been written, a NaN no double
+	 * arithmetic produces, so unwritten values are never published.
+	 */
+	private static final long unset = 0x7ff8dead0000beefL;
+
+	/**
+	 * Receives the changed values, on the publishing thread.
+	 */
+	public interface Sink {
+
+		public void putNumber(String key, double value);
+
+		public void putBoolean(String key, boolean value);
+
+	}
+
+	public static final Sink smartDashboard = new Sink() {
+
+		@Override
+		public void putNumber(String key, double value) {
+			SmartDashboard.putNumber(key, value);
+		}
+
+		@Override
+		public void putBoolean(String key, boolean value) {
+			SmartDashboard.putBoolean(key, value);
+		}
+
+	};
+
+	public static final class NumberHandle {
+		private final AtomicLongArray values;
+		private final int index;
+
+		private NumberHandle(AtomicLongArray values, int index) {
+			this.values = values;
+			this.index = index;
+		}
+
+		public void set(double value) {
+			values.lazySet(index, Double.doubleToLongBits(value));
+		}
+
+		public double get() {
+			return Double.longBitsToDouble(values.get(index));
+		}
+	}
+
+	public static final class BooleanHandle {
+		private final AtomicLongArray values;
+		private final int index;
+
+		private BooleanHandle(AtomicLongArray values, int index) {
+			this.values = values;
+			this.index = index;
+		}
+
+		public void set(boolean value) {
+			values.lazySet(index, value ? 1L : 0L);
+		}
+
+		public boolean get() {
+			return values.get(index) == 1L;
+		}
+	}
+
+	private static Telemetry instance;
+
+	private final String name;
+	private final Sink sink;
+	private final AtomicLongArray values;
+	private final String[] keys;
+	private final boolean[] booleans;
+	private final Object[] handles;
+	private final Map<String, Integer> indices = new HashMap<>();
+	private volatile int count;
+
+	// Only touched by the publishing thread.
+	private final long[] published;
+	private volatile long publishedCount;
+	private volatile long unchangedCount;
+
+	private volatile boolean republishRequested;
+
+	public Telemetry(String name) {
+		this(name, defaultCapacity, smartDashboard);
+	}
+
+	/**
+	 * @param capacity
+	 *            maximum number of values that can be registered
+	 * @param sink
+	 *            where changed values are published
+	 */
+	public Telemetry(String name, int capacity, Sink sink) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.name = name;
+		this.sink = sink;
+		values = new AtomicLongArray(capacity);
+		keys = new String[capacity];
+		booleans = new boolean[capacity];
+		handles = new Object[capacity];
+		published = new long[capacity];
+		for (int i = 0; i < capacity; i++) {
+			values.set(i, unset);
+			published[i] = unset;
+		}
+	}
+
+	/**
+	 * @return the telemetry shared by the robot's subsystems, publishing to
+	 *         the SmartDashboard
+	 */
+	public static synchronized Telemetry getInstance() {
+		if (instance == null) {
+			instance = new Telemetry("Telemetry");
+		}
+		return instance;
+	}
+
+	/**
+	 * Registers a number under the key, or returns the handle already
+	 * registered under it.
+	 */
+	public NumberHandle addNumber(String key) {
+		return (NumberHandle) register(key, false);
+	}
+
+	/**
+	 * Registers a boolean under the key, or returns the handle already
+	 * registered under it.
+	 */
+	public BooleanHandle addBoolean(String key) {
+		return (BooleanHandle) register(key, true);
+	}
+
+	private synchronized Object register(String key, boolean isBoolean) {
+		Integer existing = indices.get(key);
+		if (existing != null) {
+			int index = existing;
+			if (booleans[index] != isBoolean) {
+				throw new IllegalArgumentException("Telemetry key " + key + " is already registered as a "
+						+ (booleans[index] ? "boolean" : "number"));
+			}
+			return handles[index];
+		}
+		int index = count;
+		if (index == keys.length) {
+			throw new IllegalStateException(name + " is full, cannot register " + key);
+		}
+		keys[index] = key;
+		booleans[index] = isBoolean;
+		handles[index] = isBoolean ? new BooleanHandle(values, index) : new NumberHandle(values, index);
+		indices.put(key, index);
+		// Publishing the count makes the key visible to the publisher.
+		count = index + 1;
+		return handles[index];
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void start() {
+	}
+
+	@Override
+	public void stop() {
+	}
+
+	/**
+	 * Publishes every value that changed since the last call.
+	 */
+	@Override
+	public void loop() {
+		int n = count;
+		if (republishRequested) {
+			republishRequested = false;
+			for (int i = 0; i < n; i++) {
+				published[i] = unset;
+			}
+		}
+		long sent = 0;
+		for (int i = 0; i < n; i++) {
+			long bits = values.get(i);
+			if (bits == published[i]) {
+				continue;
+			}
+			published[i] = bits;
+			if (booleans[i]) {
+				sink.putBoolean(keys[i], bits == 1L);
+			} else {
+				sink.putNumber(keys[i], Double.longBitsToDouble(bits));
+			}
+			sent++;
+		}
+		publishedCount += sent;
+		unchangedCount += n - sent;
+	}
+
+	/**
+	 * Publishes every written value on the next loop, such as after the
+	 * dashboard reconnects.
+	 */
+	public void republish() {
+		republishRequested = true;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return the number of values sent to the sink
+	 */
+	public long getPublishedCount() {
+		return publishedCount;
+	}
+
+	/**
+	 * @return the number of values skipped because they had not changed
+	 */
+	public long getUnchangedCount() {
+		return unchangedCount;
+	}
+
+}
@@ -1,14 +1,206 @@
 package org.usfirst.frc.team4308.util;
 
-public class Vector2 extends AbstractVector {
+/**
+ * Two dimensional vector of primitive components. Operations either modify
+ * this vector in place and return it for chaining, or are static
+ * {@code ...Into} variants that write their result to a destination vector,
+ * so geometry can run every cycle without allocating. The destination may be
+ * one of the operands.
+ */
+public final class Vector2 {
 
 	public double x;
 	public double y;
 
-	public Vector2(double... axes) {
-		super(axes);
-		x = axes[0];
-		y = axes[1];
+	public Vector2() {
+	}
+
+	public Vector2(double x, double y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	public Vector2(Vector2 other) {
+		this(other.x, other.y);
+	}
+
+	public Vector2 set(double x, double y) {
+		this.x = x;
+		this.y = y;
+		return this;
+	}
+
+	public Vector2 set(Vector2 other) {
+		return set(other.x, other.y);
+	}
+
+	public double sqrMagnitude() {
+		return x * x + y * y;
+	}
+
+	public double magnitude() {
+		return Math.sqrt(x * x + y * y);
+	}
+
+	/**
+	 * @return the direction of this vector in radians counterclockwise from the
+	 *         x axis
+	 */
+	public double angle() {
+		return Math.atan2(y, x);
+	}
+
+	public double dot(Vector2 other) {
+		return x * other.x + y * other.y;
+	}
+
+	/**
+	 * @return the z component of the cross product of the two vectors extended
+	 *         to three dimensions
+	 */
+	public double cross(Vector2 other) {
+		return x * other.y - y * other.x;
+	}
+
+	public double sqrDistance(Vector2 other) {
+		double dx = x - other.x;
+		double dy = y - other.y;
+		return dx * dx + dy * dy;
+	}
+
+	public double distance(Vector2 other) {
+		return Math.sqrt(sqrDistance(other));
+	}
+
+	public Vector2 add(Vector2 operand) {
+		return addInto(this, operand, this);
+	}
+
+	public Vector2 sub(Vector2 operand) {
+		return subInto(this, operand, this);
+	}
+
+	/**
+	 * Multiplies component by component.
+	 */
+	public Vector2 mult(Vector2 operand) {
+		return multInto(this, operand, this);
+	}
+
+	/**
+	 * Divides component by component.
+	 */
+	public Vector2 div(Vector2 operand) {
+		return divInto(this, operand, this);
+	}
+
+	public Vector2 scale(double factor) {
+		return scaleInto(this, factor, this);
+	}
+
+	public Vector2 inverse() {
+		return scaleInto(this, -1.0, this);
+	}
+
+	/**
+	 * Scales this vector to unit length. The zero vector is left unchanged.
+	 */
+	public Vector2 normalize() {
+		return normalizeInto(this, this);
+	}
+
+	/**
+	 * Rotates this vector counterclockwise.
+	 */
+	public Vector2 rotate(double radians) {
+		return rotateInto(this, Math.cos(radians), Math.sin(radians), this);
+	}
+
+	/**
+	 * Rotates this vector counterclockwise by an angle given as its cosine and
+	 * sine, for rotating many vectors by the same angle.
+	 */
+	public Vector2 rotate(double cos, double sin) {
+		return rotateInto(this, cos, sin, this);
+	}
+
+	public static Vector2 addInto(Vector2 a, Vector2 b, Vector2 out) {
+		out.x = a.x + b.x;
+		out.y = a.y + b.y;
+		return out;
+	}
+
+	public static Vector2 subInto(Vector2 a, Vector2 b, Vector2 out) {
+		out.x = a.x - b.x;
+		out.y = a.y - b.y;
+		return out;
+	}
+
+	public static Vector2 multInto(Vector2 a, Vector2 b, Vector2 out) {
+		out.x = a.x * b.x;
+		out.y = a.y * b.y;
+		return out;
+	}
+
+	public static Vector2 divInto(Vector2 a, Vector2 b, Vector2 out) {
+		out.x = a.x / b.x;
+		out.y = a.y / b.y;
+		return out;
+	}
+
+	public static Vector2 scaleInto(Vector2 a, double factor, Vector2 out) {
+		out.x = a.x * factor;
+		out.y = a.y * factor;
+		return out;
+	}
+
+	public static Vector2 normalizeInto(Vector2 a, Vector2 out) {
+		double magnitude = a.magnitude();
+		if (magnitude == 0.0) {
+			return out.set(a);
+		}
+		return scaleInto(a, 1.0 / magnitude, out);
+	}
+
+	public static Vector2 rotateInto(Vector2 a, double cos, double sin, Vector2 out) {
+		double x = a.x * cos - a.y * sin;
+		double y = a.x * sin + a.y * cos;
+		out.x = x;
+		out.y = y;
+		return out;
+	}
+
+	/**
+	 * Linearly interpolates between two vectors, {@code t = 0} giving
+	 * {@code a} and {@code t = 1} giving {@code b}.
+	 */
+	public static Vector2 lerpInto(Vector2 a, Vector2 b, double t, Vector2 out) {
+		out.x = a.x + (b.x - a.x) * t;
+		out.y = a.y + (b.y - a.y) * t;
+		return out;
+	}
+
+	public Vector2 copy() {
+		return new Vector2(x, y);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Vector2)) {
+			return false;
+		}
+		Vector2 other = (Vector2) obj;
+		return Double.compare(x, other.x) == 0 && Double.compare(y, other.y) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Double.hashCode(x) + Double.hashCode(y);
+	}
+
+	@Override
+	public String toString() {
+		return "(" + x + ", " + y + ")";
 	}
 
 }
@@ -0,0 +1,239 @@
+package org.usfirst.frc.team4308.util;
+
+/**
+ * Fixed capacity list of two dimensional points stored as parallel primitive
+ * arrays of x and y components, for trajectories and sample histories with
+ * thousands of points. Bulk operations are simple loops over the arrays that
+ * the JIT can unroll and vectorize, and nothing is allocated after
+ * construction.
+ *
+ * @see Vector2
+ */
+public class Vector2Buffer {
+
+	private final double[] xs;
+	private final double[] ys;
+	private int size;
+
+	public Vector2Buffer(int capacity) {
+		xs = new double[capacity];
+		ys = new double[capacity];
+	}
+
+	/**
+	 * Appends a point.
+	 *
+	 * @return false if the buffer is full
+	 */
+	public boolean add(double x, double y) {
+		if (size == xs.length) {
+			return false;
+		}
+		xs[size] = x;
+		ys[size] = y;
+		size++;
+		return true;
+	}
+
+	public boolean add(Vector2 point) {
+		return add(point.x, point.y);
+	}
+
+	public void set(int index, double x, double y) {
+		checkIndex(index);
+		xs[index] = x;
+		ys[index] = y;
+	}
+
+	public double getX(int index) {
+		checkIndex(index);
+		return xs[index];
+	}
+
+	public double getY(int index) {
+		checkIndex(index);
+		return ys[index];
+	}
+
+	/**
+	 * Copies a point into the destination vector.
+	 */
+	public Vector2 get(int index, Vector2 out) {
+		checkIndex(index);
+		return out.set(xs[index], ys[index]);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Sets the number of points held, for filling the arrays directly.
+	 */
+	public void setSize(int size) {
+		if (size < 0 || size > xs.length) {
+			throw new IllegalArgumentException("Size " + size + " out of range for capacity " + xs.length);
+		}
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return xs.length;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return the backing x components, valid up to {@link #size()}
+	 */
+	public double[] xs() {
+		return xs;
+	}
+
+	/**
+	 * @return the backing y components, valid up to {@link #size()}
+	 */
+	public double[] ys() {
+		return ys;
+	}
+
+	public void copyFrom(Vector2Buffer source) {
+		setSize(source.size);
+		System.arraycopy(source.xs, 0, xs, 0, source.size);
+		System.arraycopy(source.ys, 0, ys, 0, source.size);
+	}
+
+	/**
+	 * Moves every point by the same offset.
+	 */
+	public void translate(double dx, double dy) {
+		double[] xs = this.xs;
+		double[] ys = this.ys;
+		for (int i = 0; i < size; i++) {
+			xs[i] += dx;
+			ys[i] += dy;
+		}
+	}
+
+	/**
+	 * Adds the points of another buffer of the same size, point by point.
+	 */
+	public void add(Vector2Buffer operand) {
+		addInto(this, operand, this);
+	}
+
+	public static void addInto(Vector2Buffer a, Vector2Buffer b, Vector2Buffer out) {
+		int n = a.size;
+		if (b.size != n) {
+			throw new IllegalArgumentException("Buffer sizes differ: " + n + " and " + b.size);
+		}
+		out.setSize(n);
+		double[] ax = a.xs, ay = a.ys, bx = b.xs, by = b.ys, ox = out.xs, oy = out.ys;
+		for (int i = 0; i < n; i++) {
+			ox[i] = ax[i] + bx[i];
+			oy[i] = ay[i] + by[i];
+		}
+	}
+
+	public void scale(double factor) {
+		double[] xs = this.xs;
+		double[] ys = this.ys;
+		for (int i = 0; i < size; i++) {
+			xs[i] *= factor;
+			ys[i] *= factor;
+		}
+	}
+
+	/**
+	 * Rotates every point counterclockwise about the origin.
+	 */
+	public void rotate(double radians) {
+		rotate(Math.cos(radians), Math.sin(radians));
+	}
+
+	public void rotate(double cos, double sin) {
+		double[] xs = this.xs;
+		double[] ys = this.ys;
+		for (int i = 0; i < size; i++) {
+			double x = xs[i];
+			double y = ys[i];
+			xs[i] = x * cos - y * sin;
+			ys[i] = x * sin + y * cos;
+		}
+	}
+
+	/**
+	 * Writes the magnitude of every point into the destination array.
+	 */
+	public void magnitudes(double[] out) {
+		double[] xs = this.xs;
+		double[] ys = this.ys;
+		for (int i = 0; i < size; i++) {
+			out[i] = Math.sqrt(xs[i] * xs[i] + ys[i] * ys[i]);
+		}
+	}
+
+	/**
+	 * Writes the distance travelled along the points up to each point into the
+	 * destination array, starting at 0 for the first point.
+	 *
+	 * @return the total length of the path
+	 */
+	public double cumulativeLengths(double[] out) {
+		double[] xs = this.xs;
+		double[] ys = this.ys;
+		double length = 0.0;
+		if (size > 0) {
+			out[0] = 0.0;
+		}
+		for (int i = 1; i < size; i++) {
+			double dx = xs[i] - xs[i - 1];
+			double dy = ys[i] - ys[i - 1];
+			length += Math.sqrt(dx * dx + dy * dy);
+			out[i] = length;
+		}
+		return length;
+	}
+
+	/**
+	 * @return the index of the point closest to the given position, or -1 if
+	 *         the buffer is empty
+	 */
+	public int nearest(double x, double y) {
+		return nearest(x, y, 0, size);
+	}
+
+	/**
+	 * Searches part of the buffer for the point closest to the given position,
+	 * such as a window ahead of the last point a path follower reached.
+	 *
+	 * @return the index of the closest point in {@code [from, to)}, or -1 if
+	 *         the range is empty
+	 */
+	public int nearest(double x, double y, int from, int to) {
+		double[] xs = this.xs;
+		double[] ys = this.ys;
+		to = Math.min(to, size);
+		int best = -1;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		for (int i = Math.max(0, from); i < to; i++) {
+			double dx = xs[i] - x;
+			double dy = ys[i] - y;
+			double distance = dx * dx + dy * dy;
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				best = i;
+			}
+		}
+		return best;
+	}
+
+}
@@ -1,16 +1,203 @@
 package org.usfirst.frc.team4308.util;
 
-public class Vector3 extends AbstractVector {
+/**
+ * Three dimensional vector of primitive components. Operations either modify
+ * this vector in place and return it for chaining, or are static
+ * {@code ...Into} variants that write their result to a destination vector,
+ * so geometry can run every cycle without allocating. The destination may be
+ * one of the operands.
+ */
+public final class Vector3 {
 
 	public double x;
 	public double y;
 	public double z;
 
-	public Vector3(double... axes) {
-		super(axes);
-		x = axes[0];
-		y = axes[1];
-		z = axes[2];
+	public Vector3() {
+	}
+
+	public Vector3(double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	public Vector3(Vector3 other) {
+		this(other.x, other.y, other.z);
+	}
+
+	public Vector3 set(double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		return this;
+	}
+
+	public Vector3 set(Vector3 other) {
+		return set(other.x, other.y, other.z);
+	}
+
+	public double sqrMagnitude() {
+		return x * x + y * y + z * z;
+	}
+
+	public double magnitude() {
+		return Math.sqrt(x * x + y * y + z * z);
+	}
+
+	public double dot(Vector3 other) {
+		return x * other.x + y * other.y + z * other.z;
+	}
+
+	public double sqrDistance(Vector3 other) {
+		double dx = x - other.x;
+		double dy = y - other.y;
+		double dz = z - other.z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	public double distance(Vector3 other) {
+		return Math.sqrt(sqrDistance(other));
+	}
+
+	public Vector3 add(Vector3 operand) {
+		return addInto(this, operand, this);
+	}
+
+	public Vector3 sub(Vector3 operand) {
+		return subInto(this, operand, this);
+	}
+
+	/**
+	 * Multiplies component by component.
+	 */
+	public Vector3 mult(Vector3 operand) {
+		return multInto(this, operand, this);
+	}
+
+	/**
+	 * Divides component by component.
+	 */
+	public Vector3 div(Vector3 operand) {
+		return divInto(this, operand, this);
+	}
+
+	public Vector3 scale(double factor) {
+		return scaleInto(this, factor, this);
+	}
+
+	public Vector3 inverse() {
+		return scaleInto(this, -1.0, this);
+	}
+
+	public Vector3 cross(Vector3 operand) {
+		return crossInto(this, operand, this);
+	}
+
+	/**
+	 * Scales this vector to unit length. The zero vector is left unchanged.
+	 */
+	public Vector3 normalize() {
+		return normalizeInto(this, this);
+	}
+
+	/**
+	 * Rotates this vector counterclockwise about the z axis, which is the
+	 * heading axis of the robot.
+	 */
+	public Vector3 rotateZ(double radians) {
+		return rotateZInto(this, Math.cos(radians), Math.sin(radians), this);
+	}
+
+	public static Vector3 addInto(Vector3 a, Vector3 b, Vector3 out) {
+		out.x = a.x + b.x;
+		out.y = a.y + b.y;
+		out.z = a.z + b.z;
+		return out;
+	}
+
+	public static Vector3 subInto(Vector3 a, Vector3 b, Vector3 out) {
+		out.x = a.x - b.x;
+		out.y = a.y - b.y;
+		out.z = a.z - b.z;
+		return out;
+	}
+
+	public static Vector3 multInto(Vector3 a, Vector3 b, Vector3 out) {
+		out.x = a.x * b.x;
+		out.y = a.y * b.y;
+		out.z = a.z * b.z;
+		return out;
+	}
+
+	public static Vector3 divInto(Vector3 a, Vector3 b, Vector3 out) {
+		out.x = a.x / b.x;
+		out.y = a.y / b.y;
+		out.z = a.z / b.z;
+		return out;
+	}
+
+	public static Vector3 scaleInto(Vector3 a, double factor, Vector3 out) {
+		out.x = a.x * factor;
+		out.y = a.y * factor;
+		out.z = a.z * factor;
+		return out;
+	}
+
+	public static Vector3 crossInto(Vector3 a, Vector3 b, Vector3 out) {
+		double x = a.y * b.z - a.z * b.y;
+		double y = a.z * b.x - a.x * b.z;
+		double z = a.x * b.y - a.y * b.x;
+		return out.set(x, y, z);
+	}
+
+	public static Vector3 normalizeInto(Vector3 a, Vector3 out) {
+		double magnitude = a.magnitude();
+		if (magnitude == 0.0) {
+			return out.set(a);
+		}
+		return scaleInto(a, 1.0 / magnitude, out);
+	}
+
+	public static Vector3 rotateZInto(Vector3 a, double cos, double sin, Vector3 out) {
+		double x = a.x * cos - a.y * sin;
+		double y = a.x * sin + a.y * cos;
+		return out.set(x, y, a.z);
+	}
+
+	/**
+	 * Linearly interpolates between two vectors, {@code t = 0} giving
+	 * {@code a} and {@code t = 1} giving {@code b}.
+	 */
+	public static Vector3 lerpInto(Vector3 a, Vector3 b, double t, Vector3 out) {
+		out.x = a.x + (b.x - a.x) * t;
+		out.y = a.y + (b.y - a.y) * t;
+		out.z = a.z + (b.z - a.z) * t;
+		return out;
+	}
+
+	public Vector3 copy() {
+		return new Vector3(x, y, z);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof Vector3)) {
+			return false;
+		}
+		Vector3 other = (Vector3) obj;
+		return Double.compare(x, other.x) == 0 && Double.compare(y, other.y) == 0
+				&& Double.compare(z, other.z) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * Double.hashCode(x) + Double.hashCode(y)) + Double.hashCode(z);
+	}
+
+	@Override
+	public String toString() {
+		return "(" + x + ", " + y + ", " + z + ")";
 	}
 
 }
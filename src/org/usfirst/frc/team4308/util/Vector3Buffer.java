@@ -0,0 +1,252 @@
+package org.usfirst.frc.team4308.util;
+
+/**
+ * Fixed capacity list of three dimensional points stored as parallel
+ * primitive arrays of x, y and z components, for pose histories and sample
+ * logs with thousands of entries. Bulk operations are simple loops over the
+ * arrays that the JIT can unroll and vectorize, and nothing is allocated after
+ * construction.
+ *
+ * @see Vector3
+ * @see Vector2Buffer
+ */
+public class Vector3Buffer {
+
+	private final double[] xs;
+	private final double[] ys;
+	private final double[] zs;
+	private int size;
+
+	public Vector3Buffer(int capacity) {
+		xs = new double[capacity];
+		ys = new double[capacity];
+		zs = new double[capacity];
+	}
+
+	/**
+	 * Appends a point.
+	 *
+	 * @return false if the buffer is full
+	 */
+	public boolean add(double x, double y, double z) {
+		if (size == xs.length) {
+			return false;
+		}
+		xs[size] = x;
+		ys[size] = y;
+		zs[size] = z;
+		size++;
+		return true;
+	}
+
+	public boolean add(Vector3 point) {
+		return add(point.x, point.y, point.z);
+	}
+
+	public void set(int index, double x, double y, double z) {
+		checkIndex(index);
+		xs[index] = x;
+		ys[index] = y;
+		zs[index] = z;
+	}
+
+	public double getX(int index) {
+		checkIndex(index);
+		return xs[index];
+	}
+
+	public double getY(int index) {
+		checkIndex(index);
+		return ys[index];
+	}
+
+	public double getZ(int index) {
+		checkIndex(index);
+		return zs[index];
+	}
+
+	/**
+	 * Copies a point into the destination vector.
+	 */
+	public Vector3 get(int index, Vector3 out) {
+		checkIndex(index);
+		return out.set(xs[index], ys[index], zs[index]);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	/**
+	 * Sets the number of points held, for filling the arrays directly.
+	 */
+	public void setSize(int size) {
+		if (size < 0 || size > xs.length) {
+			throw new IllegalArgumentException("Size " + size + " out of range for capacity " + xs.length);
+		}
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return xs.length;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * @return the backing x components, valid up to {@link #size()}
+	 */
+	public double[] xs() {
+		return xs;
+	}
+
+	/**
+	 * @return the backing y components, valid up to {@link #size()}
+	 */
+	public double[] ys() {
+		return ys;
+	}
+
+	/**
+	 * @return the backing z components, valid up to {@link #size()}
+	 */
+	public double[] zs() {
+		return zs;
+	}
+
+	public void copyFrom(Vector3Buffer source) {
+		setSize(source.size);
+		System.arraycopy(source.xs, 0, xs, 0, source.size);
+		System.arraycopy(source.ys, 0, ys, 0, source.size);
+		System.arraycopy(source.zs, 0, zs, 0, source.size);
+	}
+
+	/**
+	 * Moves every point by the same offset.
+	 */
+	public void translate(double dx, double dy, double dz) {
+		double[] xs = this.xs;
+		double[] ys = this.ys;
+		double[] zs = this.zs;
+		for (int i = 0; i < size; i++) {
+			xs[i] += dx;
+			ys[i] += dy;
+			zs[i] += dz;
+		}
+	}
+
+	/**
+	 * Adds the points of another buffer of the same size, point by point.
+	 */
+	public void add(Vector3Buffer operand) {
+		addInto(this, operand, this);
+	}
+
+	public static void addInto(Vector3Buffer a, Vector3Buffer b, Vector3Buffer out) {
+		int n = a.size;
+		if (b.size != n) {
+			throw new IllegalArgumentException("Buffer sizes differ: " + n + " and " + b.size);
+		}
+		out.setSize(n);
+		double[] ax = a.xs, ay = a.ys, az = a.zs, bx = b.xs, by = b.ys, bz = b.zs;
+		double[] ox = out.xs, oy = out.ys, oz = out.zs;
+		for (int i = 0; i < n; i++) {
+			ox[i] = ax[i] + bx[i];
+			oy[i] = ay[i] + by[i];
+			oz[i] = az[i] + bz[i];
+		}
+	}
+
+	public void scale(double factor) {
+		double[] xs = this.xs;
+		double[] ys = this.ys;
+		double[] zs = this.zs;
+		for (int i = 0; i < size; i++) {
+			xs[i] *= factor;
+			ys[i] *= factor;
+			zs[i] *= factor;
+		}
+	}
+
+	/**
+	 * Rotates every point counterclockwise about the z axis.
+	 */
+	public void rotateZ(double radians) {
+		double cos = Math.cos(radians);
+		double sin = Math.sin(radians);
+		double[] xs = this.xs;
+		double[] ys = this.ys;
+		for (int i = 0; i < size; i++) {
+			double x = xs[i];
+			double y = ys[i];
+			xs[i] = x * cos - y * sin;
+			ys[i] = x * sin + y * cos;
+		}
+	}
+
+	/**
+	 * Writes the magnitude of every point into the destination array.
+	 */
+	public void magnitudes(double[] out) {
+		double[] xs = this.xs;
+		double[] ys = this.ys;
+		double[] zs = this.zs;
+		for (int i = 0; i < size; i++) {
+			out[i] = Math.sqrt(xs[i] * xs[i] + ys[i] * ys[i] + zs[i] * zs[i]);
+		}
+	}
+
+	/**
+	 * @return the index of the point closest to the given position, or -1 if
+	 *         the buffer is empty
+	 */
+	public int nearest(double x, double y, double z) {
+		double[] xs = this.xs;
+		double[] ys = this.ys;
+		double[] zs = this.zs;
+		int best = -1;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < size; i++) {
+			double dx = xs[i] - x;
+			double dy = ys[i] - y;
+			double dz = zs[i] - z;
+			double distance = dx * dx + dy * dy + dz * dz;
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return the index of the point whose x and y are closest to the given
+	 *         position, ignoring z, such as the nearest pose to a field
+	 *         position when z holds the heading; -1 if the buffer is empty
+	 */
+	public int nearestXY(double x, double y) {
+		double[] xs = this.xs;
+		double[] ys = this.ys;
+		int best = -1;
+		double bestDistance = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < size; i++) {
+			double dx = xs[i] - x;
+			double dy = ys[i] - y;
+			double distance = dx * dx + dy * dy;
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				best = i;
+			}
+		}
+		return best;
+	}
+
+}